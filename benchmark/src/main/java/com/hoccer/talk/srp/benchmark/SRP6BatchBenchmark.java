@@ -0,0 +1,94 @@
+package com.hoccer.talk.srp.benchmark;
+
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6ServerBatch;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batched server credentials benchmark
+ *
+ * Generates the server credentials for a batch of pending
+ * handshakes, once server by server with the group in parallel
+ * mode and once through {@link SRP6ServerBatch}. Scores are per
+ * batch. Both use a pool with one worker per remaining core; run
+ * with a single benchmark thread.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SRP6BatchBenchmark {
+
+    @Param({"2048", "4096"})
+    String group;
+
+    @Param({"64"})
+    int size;
+
+    SRP6Parameters params;
+    ForkJoinPool pool;
+
+    SRP6VerifyingServer[] servers;
+    SRP6ServerBatch batch;
+
+    @Setup
+    public void setup() {
+        SecureRandom random = new SecureRandom();
+        // private copy of the group, so the parallel mode does not leak
+        SRP6Parameters standard = SRP6Fixtures.parameters(group);
+        params = new SRP6Parameters(standard.N, standard.g);
+        params.getGeneratorTable();
+        pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        // used by the individual servers, the batch splits over the pool by itself
+        params.setParallelPool(pool);
+        byte[] salt = SRP6Fixtures.salt(SRP6Fixtures.digest("SHA-256"));
+        BigInteger verifier = SRP6Fixtures.verifier(params, SRP6Fixtures.digest("SHA-256"), salt);
+        servers = new SRP6VerifyingServer[size];
+        for(int i = 0; i < size; i++) {
+            servers[i] = new SRP6VerifyingServer();
+            servers[i].initVerifiable(params, verifier, SRP6Fixtures.USER, salt, SRP6Fixtures.digest("SHA-256"), random);
+        }
+        batch = new SRP6ServerBatch(params, SRP6Fixtures.digest("SHA-256"), pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        params.setParallelPool(null);
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public BigInteger[] individual() {
+        BigInteger[] results = new BigInteger[servers.length];
+        for(int i = 0; i < servers.length; i++) {
+            results[i] = servers[i].generateServerCredentials();
+        }
+        return results;
+    }
+
+    @Benchmark
+    public BigInteger[] batch() {
+        return batch.generateServerCredentials(servers);
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.hoccer.talk.srp.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmark launcher
+ *
+ * Runs the selected benchmarks with the GC profiler attached,
+ * so every result also reports the allocation rate.
+ *
+ * Usage:
+ *
+ *   mvn package
+ *   java -jar target/benchmarks.jar [jmh options] [benchmark regex]
+ *
+ * For example, to restrict a run to the 4096 bit group:
+ *
+ *   java -jar target/benchmarks.jar -p group=4096 SRP6HandshakeBenchmark
+ *
+ */
+public class SRP6Benchmarks {
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+}
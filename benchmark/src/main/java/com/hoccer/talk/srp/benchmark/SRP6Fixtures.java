@@ -0,0 +1,70 @@
+package com.hoccer.talk.srp.benchmark;
+
+import com.hoccer.talk.srp.SRP6Parameters;
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.agreement.srp.SRP6VerifierGenerator;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.digests.SHA224Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+
+import java.math.BigInteger;
+
+/**
+ * Shared setup for benchmarks
+ *
+ * Maps benchmark parameters to groups and digests
+ * and provides a test account.
+ *
+ */
+public class SRP6Fixtures {
+
+    public static final byte[] USER = "alice".getBytes();
+    public static final byte[] PASS = "password123".getBytes();
+
+    /** Get a standard group by its bit size */
+    public static SRP6Parameters parameters(String bits) {
+        int size = Integer.parseInt(bits);
+        switch (size) {
+            case 1024:
+                return SRP6Parameters.CONSTANTS_1024;
+            case 2048:
+                return SRP6Parameters.CONSTANTS_2048;
+            case 4096:
+                return SRP6Parameters.CONSTANTS_4096;
+            case 8192:
+                return SRP6Parameters.CONSTANTS_8192;
+            default:
+                throw new IllegalArgumentException("Unknown group size " + bits);
+        }
+    }
+
+    /** Create a digest by its algorithm name */
+    public static Digest digest(String algorithm) {
+        if("SHA-1".equals(algorithm)) {
+            return new SHA1Digest();
+        }
+        if("SHA-224".equals(algorithm)) {
+            return new SHA224Digest();
+        }
+        if("SHA-256".equals(algorithm)) {
+            return new SHA256Digest();
+        }
+        throw new IllegalArgumentException("Unknown digest " + algorithm);
+    }
+
+    /** Salt of digest size filled with a fixed pattern */
+    public static byte[] salt(Digest digest) {
+        byte[] salt = new byte[digest.getDigestSize()];
+        for(int i = 0; i < salt.length; i++) {
+            salt[i] = (byte)(i * 31 + 7);
+        }
+        return salt;
+    }
+
+    public static BigInteger verifier(SRP6Parameters params, Digest digest, byte[] salt) {
+        SRP6VerifierGenerator generator = new SRP6VerifierGenerator();
+        generator.init(params.N, params.g, digest);
+        return generator.generateVerifier(salt, USER, PASS);
+    }
+
+}
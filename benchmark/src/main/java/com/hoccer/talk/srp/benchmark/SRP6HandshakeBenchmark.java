@@ -0,0 +1,150 @@
+package com.hoccer.talk.srp.benchmark;
+
+import com.hoccer.talk.srp.SRP6DigestEncoder;
+import com.hoccer.talk.srp.SRP6Group;
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6Verification;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.CryptoException;
+import org.bouncycastle.crypto.Digest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handshake phase benchmark
+ *
+ * Measures every step of an SRP handshake as well as the full
+ * exchange for all standard groups and supported digests.
+ * Reports throughput and sampled latency percentiles.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SRP6HandshakeBenchmark {
+
+    @Param({"1024", "2048", "4096", "8192"})
+    String group;
+
+    @Param({"SHA-1", "SHA-224", "SHA-256"})
+    String digest;
+
+    SecureRandom random;
+    SRP6Parameters params;
+    SRP6Group constants;
+    Digest serverDigest;
+    Digest clientDigest;
+
+    byte[] salt;
+    BigInteger verifier;
+
+    SRP6VerifyingClient client;
+    SRP6VerifyingServer server;
+
+    BigInteger A;
+    BigInteger B;
+    byte[] K;
+    byte[] M1;
+
+    SRP6DigestEncoder encoder;
+    byte[] out;
+
+    @Setup
+    public void setup() throws CryptoException {
+        random = new SecureRandom();
+        params = SRP6Fixtures.parameters(group);
+        serverDigest = SRP6Fixtures.digest(digest);
+        clientDigest = SRP6Fixtures.digest(digest);
+        constants = params.getGroup(serverDigest);
+        params.getGeneratorTable();
+
+        salt = SRP6Fixtures.salt(serverDigest);
+        verifier = SRP6Fixtures.verifier(params, SRP6Fixtures.digest(digest), salt);
+
+        client = new SRP6VerifyingClient();
+        client.init(params, clientDigest, random);
+        server = new SRP6VerifyingServer();
+        server.initVerifiable(params, verifier, SRP6Fixtures.USER, salt, serverDigest, random);
+
+        A = client.generateClientCredentials(salt, SRP6Fixtures.USER, SRP6Fixtures.PASS);
+        B = server.generateServerCredentials();
+        BigInteger S = server.calculateSecret(A);
+        client.calculateSecret(B);
+        K = SRP6Verification.calculateHash(serverDigest, S);
+        M1 = client.calculateVerifier();
+
+        encoder = new SRP6DigestEncoder();
+        out = new byte[serverDigest.getDigestSize()];
+    }
+
+    @Benchmark
+    public BigInteger clientCredentials() {
+        return client.generateClientCredentials(salt, SRP6Fixtures.USER, SRP6Fixtures.PASS);
+    }
+
+    @Benchmark
+    public BigInteger serverCredentials() {
+        return server.generateServerCredentials();
+    }
+
+    @Benchmark
+    public BigInteger serverSecret() throws CryptoException {
+        return server.calculateSecret(A);
+    }
+
+    @Benchmark
+    public BigInteger clientSecret() throws CryptoException {
+        return client.calculateSecret(B);
+    }
+
+    @Benchmark
+    public byte[] calculateM1() {
+        SRP6Verification.calculateM1(serverDigest, constants.getH_Ng(), SRP6Fixtures.USER, salt,
+                A, B, K, encoder, out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] calculateM2() {
+        SRP6Verification.calculateM2(serverDigest, A, M1, 0, K, encoder, out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public BigInteger calculateU() {
+        return SRP6Verification.calculateU(serverDigest, constants.getLength(), A, B, encoder);
+    }
+
+    @Benchmark
+    public byte[] handshake() throws CryptoException {
+        SRP6VerifyingClient c = new SRP6VerifyingClient();
+        SRP6VerifyingServer s = new SRP6VerifyingServer();
+        c.init(constants, clientDigest, random);
+        s.initVerifiable(constants, verifier, SRP6Fixtures.USER, salt, serverDigest, random);
+        BigInteger clientA = c.generateClientCredentials(salt, SRP6Fixtures.USER, SRP6Fixtures.PASS);
+        BigInteger serverB = s.generateServerCredentials();
+        s.calculateSecret(clientA);
+        c.calculateSecret(serverB);
+        byte[] serverM2 = s.verifyClient(c.calculateVerifier());
+        c.verifyServer(serverM2);
+        return serverM2;
+    }
+
+}
@@ -0,0 +1,536 @@
+package com.hoccer.talk.srp.benchmark;
+
+import com.hoccer.talk.srp.SRP6AsyncServer;
+import com.hoccer.talk.srp.SRP6BatchVerifierGenerator;
+import com.hoccer.talk.srp.SRP6Histogram;
+import com.hoccer.talk.srp.SRP6MemoryVerifierStore;
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6ServerPool;
+import com.hoccer.talk.srp.SRP6VerifierRecord;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.CryptoException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Concurrent login load test
+ *
+ * Unlike the microbenchmarks, this drives complete logins from
+ * many concurrent clients against a single server side, showing
+ * contention and saturation during a login storm. Clients and
+ * server exchange encoded messages over an in-memory transport.
+ * The server side runs its steps on an {@link SRP6AsyncServer},
+ * recycles handshakes through an {@link SRP6ServerPool} per group
+ * and digest and looks up accounts in a verifier store.
+ *
+ * Clients run on virtual threads when the runtime has them and
+ * on platform threads otherwise. For every login a client picks
+ * a random group, digest and account, and uses a wrong password
+ * for the configured fraction of logins.
+ *
+ * Usage:
+ *
+ *   java -cp target/benchmarks.jar com.hoccer.talk.srp.benchmark.SRP6LoadTest [option=value ...]
+ *
+ * Options and their defaults:
+ *
+ *   clients=256        concurrent clients
+ *   threads=virtual    virtual or platform client threads
+ *   groups=2048        comma separated group sizes
+ *   digests=SHA-256    comma separated digest algorithms
+ *   wrong=0.05         fraction of logins with a wrong password
+ *   accounts=64        accounts per group and digest
+ *   workers=cores      server worker threads
+ *   pending=4096       server admission limit
+ *   backoff=20         mean client delay in milliseconds after a busy reply
+ *   warmup=10          warmup in seconds
+ *   duration=30        measurement in seconds
+ *
+ * Reports logins per second, latency percentiles of successful
+ * logins and process CPU time per handshake. Both sides run in
+ * this process, so the CPU time covers client and server.
+ *
+ */
+public class SRP6LoadTest {
+
+    static final byte HELLO = 1;
+    static final byte CHALLENGE = 2;
+    static final byte VERIFY = 3;
+    static final byte ACCEPT = 4;
+    static final byte DENY = 5;
+    static final byte BUSY = 6;
+    static final byte CANCEL = 7;
+
+    final int clients;
+    boolean virtual;
+    final double wrong;
+    final int accounts;
+    final long backoff;
+    final long warmup;
+    final long duration;
+
+    final List<Realm> realms = new ArrayList<Realm>();
+    final Map<String, Realm> realmsByName = new HashMap<String, Realm>();
+    final SRP6MemoryVerifierStore store = new SRP6MemoryVerifierStore();
+    final SRP6AsyncServer server;
+    final Endpoint endpoint = new Endpoint();
+
+    final SRP6Histogram latency = new SRP6Histogram();
+    final LongAdder logins = new LongAdder();
+    final LongAdder denied = new LongAdder();
+    final LongAdder busy = new LongAdder();
+    final LongAdder mismatches = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    final AtomicReference<Throwable> firstError = new AtomicReference<Throwable>();
+
+    volatile boolean running = true;
+
+    SRP6LoadTest(Map<String, String> options) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.clients = Integer.parseInt(option(options, "clients", "256"));
+        this.virtual = "virtual".equals(option(options, "threads", "virtual"));
+        this.wrong = Double.parseDouble(option(options, "wrong", "0.05"));
+        this.accounts = Integer.parseInt(option(options, "accounts", "64"));
+        this.backoff = Long.parseLong(option(options, "backoff", "20"));
+        this.warmup = TimeUnit.SECONDS.toMillis(Long.parseLong(option(options, "warmup", "10")));
+        this.duration = TimeUnit.SECONDS.toMillis(Long.parseLong(option(options, "duration", "30")));
+        int workers = Integer.parseInt(option(options, "workers", Integer.toString(cores)));
+        int pending = Integer.parseInt(option(options, "pending", "4096"));
+        this.server = new SRP6AsyncServer(workers, Math.max(workers, pending));
+        String[] digests = option(options, "digests", "SHA-256").split(",");
+        for(String group: option(options, "groups", "2048").split(",")) {
+            for(String digest: digests) {
+                Realm realm = new Realm(SRP6Fixtures.parameters(group.trim()), digest.trim());
+                realms.add(realm);
+                realmsByName.put(realm.name, realm);
+            }
+        }
+        if(!options.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options " + options.keySet());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<String, String>();
+        for(String arg: args) {
+            int split = arg.indexOf('=');
+            if(split < 0) {
+                throw new IllegalArgumentException("Expected option=value: " + arg);
+            }
+            options.put(arg.substring(0, split), arg.substring(split + 1));
+        }
+        new SRP6LoadTest(options).run();
+    }
+
+    void run() throws Exception {
+        System.out.println("Creating " + accounts + " accounts for " + realms.size() + " realms");
+        for(Realm realm: realms) {
+            realm.createAccounts();
+        }
+
+        ExecutorService executor = clientExecutor();
+        for(int c = 0; c < clients; c++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    while(running) {
+                        login();
+                    }
+                }
+            });
+        }
+
+        System.out.println("Warming up for " + warmup / 1000 + " s");
+        Thread.sleep(warmup);
+        reset();
+        long cpuStart = processCpuTime();
+        long start = System.nanoTime();
+
+        System.out.println("Measuring for " + duration / 1000 + " s");
+        Thread.sleep(duration);
+        long elapsed = System.nanoTime() - start;
+        long cpuEnd = processCpuTime();
+        long cpu = (cpuStart >= 0 && cpuEnd >= 0) ? cpuEnd - cpuStart : -1;
+        report(elapsed, cpu);
+
+        running = false;
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        server.shutdown();
+        Throwable error = firstError.get();
+        if(error != null) {
+            System.out.println("First error:");
+            error.printStackTrace(System.out);
+        }
+    }
+
+    private void reset() {
+        latency.reset();
+        logins.reset();
+        denied.reset();
+        busy.reset();
+        mismatches.reset();
+        errors.reset();
+    }
+
+    private void report(long elapsed, long cpu) {
+        double seconds = elapsed / 1e9;
+        long successful = logins.sum();
+        long handshakes = successful + denied.sum();
+        System.out.println();
+        System.out.println("clients        " + clients + " on " + (virtual ? "virtual" : "platform") + " threads");
+        System.out.println("realms         " + realmsByName.keySet() + ", " + (wrong * 100) + "% wrong passwords");
+        System.out.printf("logins         %d (%.1f/s)%n", successful, successful / seconds);
+        System.out.printf("handshakes     %d (%.1f/s)%n", handshakes, handshakes / seconds);
+        System.out.printf("denied         %d%n", denied.sum());
+        System.out.printf("busy           %d%n", busy.sum());
+        System.out.printf("mismatches     %d%n", mismatches.sum());
+        System.out.printf("errors         %d%n", errors.sum());
+        System.out.printf("latency p50    %.2f ms%n", latency.getPercentile(50) / 1e6);
+        System.out.printf("latency p99    %.2f ms%n", latency.getPercentile(99) / 1e6);
+        System.out.printf("latency p999   %.2f ms%n", latency.getPercentile(99.9) / 1e6);
+        if(cpu >= 0 && handshakes > 0) {
+            System.out.printf("cpu/handshake  %.2f ms%n", cpu / 1e6 / handshakes);
+        } else {
+            System.out.println("cpu/handshake  not available");
+        }
+    }
+
+    /** Run a single login of a random account and record its outcome */
+    void login() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Realm realm = realms.get(random.nextInt(realms.size()));
+        int account = random.nextInt(accounts);
+        boolean correct = random.nextDouble() >= wrong;
+        long start = System.nanoTime();
+        try {
+            byte outcome = realm.login(account, correct);
+            if(outcome == BUSY) {
+                busy.increment();
+                // back off like a real client instead of hammering the server
+                Thread.sleep(backoff / 2 + random.nextLong(backoff + 1));
+            } else if((outcome == ACCEPT) != correct) {
+                mismatches.increment();
+            } else if(outcome == ACCEPT) {
+                latency.record(System.nanoTime() - start);
+                logins.increment();
+            } else {
+                denied.increment();
+            }
+        } catch (Exception e) {
+            errors.increment();
+            firstError.compareAndSet(null, e);
+        }
+    }
+
+    private ExecutorService clientExecutor() {
+        if(virtual) {
+            try {
+                // only available from Java 21 on
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService)factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("Virtual threads are not available, using platform threads");
+                virtual = false;
+            }
+        }
+        return Executors.newFixedThreadPool(clients);
+    }
+
+    /** CPU time of this process in nanoseconds, or -1 if unknown */
+    static long processCpuTime() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        try {
+            Class<?> extension = Class.forName("com.sun.management.OperatingSystemMXBean");
+            if(extension.isInstance(os)) {
+                return (Long)extension.getMethod("getProcessCpuTime").invoke(os);
+            }
+        } catch (ReflectiveOperationException e) {
+            // not a HotSpot compatible runtime
+        }
+        return -1;
+    }
+
+    private static String option(Map<String, String> options, String name, String fallback) {
+        String value = options.remove(name);
+        return (value != null) ? value : fallback;
+    }
+
+    /** Accounts and server handshakes of one group and digest */
+    class Realm {
+
+        final SRP6Parameters params;
+        final String digest;
+        final String name;
+        final SRP6ServerPool pool;
+
+        Realm(SRP6Parameters params, String digest) {
+            this.params = params;
+            this.digest = digest;
+            this.name = params.N.bitLength() + "/" + digest;
+            this.pool = new SRP6ServerPool(params, SRP6Fixtures.digest(digest), null, clients);
+        }
+
+        void createAccounts() {
+            SecureRandom random = new SecureRandom();
+            SRP6BatchVerifierGenerator generator = new SRP6BatchVerifierGenerator(
+                    params, SRP6Fixtures.digest(digest), null, 1);
+            for(int i = 0; i < accounts; i++) {
+                byte[] salt = new byte[16];
+                random.nextBytes(salt);
+                BigInteger verifier = generator.generateVerifier(salt, identity(i), password(i, true));
+                store.put(new SRP6VerifierRecord(params, identity(i), salt, verifier));
+            }
+        }
+
+        byte[] identity(int account) {
+            return ("user/" + name + "/" + account).getBytes();
+        }
+
+        byte[] password(int account, boolean correct) {
+            return ((correct ? "password-" : "wrong-") + account).getBytes();
+        }
+
+        /** Log in as a client, returns ACCEPT, DENY or BUSY */
+        byte login(int account, boolean correct) throws Exception {
+            byte[] identity = identity(account);
+            SRP6VerifyingClient client = new SRP6VerifyingClient();
+            client.init(params, SRP6Fixtures.digest(digest), null);
+
+            Message hello = new Message(HELLO);
+            hello.writeUTF(digest);
+            hello.writeField(identity);
+            DataInputStream reply = endpoint.exchange(hello.toByteArray()).get();
+            byte type = reply.readByte();
+            if(type != CHALLENGE) {
+                return type;
+            }
+            long session = reply.readLong();
+            BigInteger A;
+            byte[] M1;
+            try {
+                byte[] salt = readField(reply);
+                BigInteger B = new BigInteger(1, readField(reply));
+                A = client.generateClientCredentials(salt, identity, password(account, correct));
+                client.calculateSecret(B);
+                M1 = client.calculateVerifier();
+            } catch (Exception e) {
+                // hand the pooled server back instead of leaving the session behind
+                Message cancel = new Message(CANCEL);
+                cancel.writeLong(session);
+                endpoint.exchange(cancel.toByteArray()).get();
+                throw e;
+            }
+
+            Message verify = new Message(VERIFY);
+            verify.writeLong(session);
+            verify.writeField(A.toByteArray());
+            verify.writeField(M1);
+            reply = endpoint.exchange(verify.toByteArray()).get();
+            type = reply.readByte();
+            if(type == ACCEPT) {
+                client.verifyServer(readField(reply));
+            }
+            return type;
+        }
+
+    }
+
+    /** A handshake waiting for the client verifier */
+    static class Session {
+
+        final Realm realm;
+        final SRP6VerifyingServer server;
+
+        Session(Realm realm, SRP6VerifyingServer server) {
+            this.realm = realm;
+            this.server = server;
+        }
+
+    }
+
+    /**
+     * Server side of the in-memory transport
+     *
+     * Requests and replies are encoded into byte arrays like on
+     * the wire, so every message is copied and parsed once.
+     */
+    class Endpoint {
+
+        final ConcurrentMap<Long, Session> sessions = new ConcurrentHashMap<Long, Session>();
+        final AtomicLong sessionIds = new AtomicLong();
+
+        CompletableFuture<DataInputStream> exchange(byte[] request) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(request));
+            CompletableFuture<byte[]> reply;
+            switch (in.readByte()) {
+                case HELLO:
+                    reply = hello(in.readUTF(), readField(in));
+                    break;
+                case VERIFY:
+                    reply = verify(in.readLong(), new BigInteger(1, readField(in)), readField(in));
+                    break;
+                case CANCEL:
+                    reply = cancel(in.readLong());
+                    break;
+                default:
+                    throw new IOException("Unknown request");
+            }
+            return reply.thenApply(new Function<byte[], DataInputStream>() {
+                @Override
+                public DataInputStream apply(byte[] bytes) {
+                    return new DataInputStream(new ByteArrayInputStream(bytes));
+                }
+            });
+        }
+
+        private CompletableFuture<byte[]> hello(String digest, byte[] identity) {
+            SRP6VerifierRecord record = store.lookup(identity);
+            final Realm realm = (record != null) ? realmsByName.get(record.getParameters().N.bitLength() + "/" + digest) : null;
+            if(realm == null) {
+                return CompletableFuture.completedFuture(new byte[] { DENY });
+            }
+            final SRP6VerifyingServer handshake = realm.pool.acquire(record);
+            final byte[] salt = record.getSalt();
+            return server.generateServerCredentials(handshake).handle(new BiFunction<BigInteger, Throwable, byte[]>() {
+                @Override
+                public byte[] apply(BigInteger B, Throwable failure) {
+                    if(failure != null) {
+                        realm.pool.release(handshake);
+                        return reply(failure);
+                    }
+                    long session = sessionIds.incrementAndGet();
+                    sessions.put(session, new Session(realm, handshake));
+                    Message challenge = new Message(CHALLENGE);
+                    challenge.writeLong(session);
+                    challenge.writeField(salt);
+                    challenge.writeField(B.toByteArray());
+                    return challenge.toByteArray();
+                }
+            });
+        }
+
+        private CompletableFuture<byte[]> verify(long id, BigInteger A, byte[] M1) {
+            final Session session = sessions.remove(id);
+            if(session == null) {
+                return CompletableFuture.completedFuture(new byte[] { DENY });
+            }
+            return server.verifyClient(session.server, A, M1).handle(new BiFunction<byte[], Throwable, byte[]>() {
+                @Override
+                public byte[] apply(byte[] M2, Throwable failure) {
+                    try {
+                        if(failure != null) {
+                            return reply(failure);
+                        }
+                        Message accept = new Message(ACCEPT);
+                        accept.writeField(M2);
+                        return accept.toByteArray();
+                    } finally {
+                        session.realm.pool.release(session.server);
+                    }
+                }
+            });
+        }
+
+        private CompletableFuture<byte[]> cancel(long id) {
+            Session session = sessions.remove(id);
+            if(session != null) {
+                session.realm.pool.release(session.server);
+            }
+            return CompletableFuture.completedFuture(new byte[] { DENY });
+        }
+
+        private byte[] reply(Throwable failure) {
+            Throwable cause = (failure instanceof CompletionException && failure.getCause() != null)
+                    ? failure.getCause() : failure;
+            if(cause instanceof RejectedExecutionException) {
+                return new byte[] { BUSY };
+            }
+            if(cause instanceof CryptoException) {
+                return new byte[] { DENY };
+            }
+            throw new CompletionException(cause);
+        }
+
+    }
+
+    /** Encoder for a single message */
+    static class Message {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        Message(byte type) {
+            bytes.write(type);
+        }
+
+        void writeLong(long value) {
+            try {
+                out.writeLong(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void writeUTF(String value) {
+            try {
+                out.writeUTF(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void writeField(byte[] field) {
+            try {
+                out.writeInt(field.length);
+                out.write(field);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+
+    }
+
+    static byte[] readField(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if(length < 0 || length > in.available()) {
+            throw new IOException("Invalid field length " + length);
+        }
+        byte[] field = new byte[length];
+        in.readFully(field);
+        return field;
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.hoccer.talk.srp.benchmark;
+
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.CryptoException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parallel exponentiation benchmark
+ *
+ * Compares the latency of handshake steps between sequential
+ * and parallel mode of a group. Run with a single benchmark
+ * thread; the parallel mode uses a dedicated pool with one
+ * worker per remaining core.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SRP6ParallelBenchmark {
+
+    @Param({"4096", "8192"})
+    String group;
+
+    @Param({"sequential", "parallel"})
+    String mode;
+
+    SecureRandom random;
+    SRP6Parameters params;
+    ForkJoinPool pool;
+
+    byte[] salt;
+    BigInteger verifier;
+
+    SRP6VerifyingClient client;
+    SRP6VerifyingServer server;
+
+    BigInteger A;
+    BigInteger B;
+
+    @Setup
+    public void setup() throws CryptoException {
+        random = new SecureRandom();
+        params = SRP6Fixtures.parameters(group);
+        params.getGeneratorTable();
+        if("parallel".equals(mode)) {
+            pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+            params.setParallelPool(pool);
+        }
+
+        salt = SRP6Fixtures.salt(SRP6Fixtures.digest("SHA-256"));
+        verifier = SRP6Fixtures.verifier(params, SRP6Fixtures.digest("SHA-256"), salt);
+
+        client = new SRP6VerifyingClient();
+        client.init(params, SRP6Fixtures.digest("SHA-256"), random);
+        server = new SRP6VerifyingServer();
+        server.initVerifiable(params, verifier, SRP6Fixtures.USER, salt, SRP6Fixtures.digest("SHA-256"), random);
+
+        A = client.generateClientCredentials(salt, SRP6Fixtures.USER, SRP6Fixtures.PASS);
+        B = server.generateServerCredentials();
+    }
+
+    @TearDown
+    public void tearDown() {
+        params.setParallelPool(null);
+        if(pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public BigInteger clientCredentials() {
+        return client.generateClientCredentials(salt, SRP6Fixtures.USER, SRP6Fixtures.PASS);
+    }
+
+    @Benchmark
+    public BigInteger serverCredentials() {
+        return server.generateServerCredentials();
+    }
+
+    @Benchmark
+    public BigInteger clientSecret() throws CryptoException {
+        return client.calculateSecret(B);
+    }
+
+    @Benchmark
+    public byte[] handshake() throws CryptoException {
+        SRP6VerifyingClient c = new SRP6VerifyingClient();
+        SRP6VerifyingServer s = new SRP6VerifyingServer();
+        c.init(params, SRP6Fixtures.digest("SHA-256"), random);
+        s.initVerifiable(params, verifier, SRP6Fixtures.USER, salt, SRP6Fixtures.digest("SHA-256"), random);
+        BigInteger clientA = c.generateClientCredentials(salt, SRP6Fixtures.USER, SRP6Fixtures.PASS);
+        BigInteger serverB = s.generateServerCredentials();
+        s.calculateSecret(clientA);
+        c.calculateSecret(serverB);
+        byte[] serverM2 = s.verifyClient(c.calculateVerifier());
+        c.verifyServer(serverM2);
+        return serverM2;
+    }
+
+}
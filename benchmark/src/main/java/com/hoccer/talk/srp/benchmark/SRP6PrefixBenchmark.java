@@ -0,0 +1,97 @@
+package com.hoccer.talk.srp.benchmark;
+
+import com.hoccer.talk.srp.SRP6DigestEncoder;
+import com.hoccer.talk.srp.SRP6DigestPrefix;
+import com.hoccer.talk.srp.SRP6IdentityHashCache;
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6Verification;
+import org.bouncycastle.crypto.Digest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * M1 prefix benchmark
+ *
+ * Calculates M1 from scratch, with H(I) from a cache and from
+ * a digest prefix. The identity is as long as a typical client
+ * id, so hashing it takes a compression of its own.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SRP6PrefixBenchmark {
+
+    @Param({"SHA-1", "SHA-224", "SHA-256"})
+    String digest;
+
+    @Param({"1024", "2048"})
+    String group;
+
+    Digest instance;
+    SRP6DigestEncoder encoder = new SRP6DigestEncoder();
+
+    byte[] identity;
+    byte[] salt;
+    byte[] H_Ng;
+    BigInteger A;
+    BigInteger B;
+    byte[] K;
+    byte[] M1;
+
+    SRP6IdentityHashCache hashes;
+    SRP6DigestPrefix prefix;
+
+    @Setup
+    public void setup() {
+        SecureRandom random = new SecureRandom();
+        SRP6Parameters params = SRP6Fixtures.parameters(group);
+        instance = SRP6Fixtures.digest(digest);
+        identity = "3f2c9a1e-8b47-4d6e-9c0f-5a1b2c3d4e5f".getBytes();
+        salt = SRP6Fixtures.salt(instance);
+        H_Ng = params.getH_Ng(instance);
+        A = new BigInteger(params.N.bitLength() - 1, random);
+        B = new BigInteger(params.N.bitLength() - 1, random);
+        K = new byte[instance.getDigestSize()];
+        random.nextBytes(K);
+        M1 = new byte[instance.getDigestSize()];
+
+        hashes = new SRP6IdentityHashCache(instance, 1024);
+        prefix = new SRP6DigestPrefix(params.getGroup(instance), instance, identity, salt);
+    }
+
+    @Benchmark
+    public byte[] plain() {
+        SRP6Verification.calculateM1(instance, H_Ng, identity, salt, A, B, K, encoder, M1, 0);
+        return M1;
+    }
+
+    @Benchmark
+    public byte[] cachedIdentity() {
+        SRP6Verification.calculateM1(instance, H_Ng, hashes, identity, salt, A, B, K, encoder, M1, 0);
+        return M1;
+    }
+
+    @Benchmark
+    public byte[] prefix() {
+        SRP6Verification.calculateM1(instance, prefix, A, B, K, encoder, M1, 0);
+        return M1;
+    }
+
+}
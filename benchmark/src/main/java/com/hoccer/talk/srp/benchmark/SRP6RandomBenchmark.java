@@ -0,0 +1,93 @@
+package com.hoccer.talk.srp.benchmark;
+
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6RandomSource;
+import org.bouncycastle.crypto.agreement.srp.SRP6Util;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random source scaling benchmark
+ *
+ * Draws ephemeral private values from one SecureRandom shared
+ * by all benchmark threads, either a plain system instance or
+ * the per-thread DRBG source. The main method repeats the run
+ * for 1, 2, 4 ... threads up to the number of cores:
+ *
+ *   java -cp target/benchmarks.jar com.hoccer.talk.srp.benchmark.SRP6RandomBenchmark
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SRP6RandomBenchmark {
+
+    @Param({"system", "per-thread"})
+    String source;
+
+    @Param({"2048"})
+    String group;
+
+    SRP6Parameters params;
+    SecureRandom random;
+
+    @Setup
+    public void setup() {
+        params = SRP6Fixtures.parameters(group);
+        if("system".equals(source)) {
+            random = new SecureRandom();
+        } else {
+            random = new SRP6RandomSource().getSecureRandom();
+        }
+    }
+
+    @Benchmark
+    public BigInteger privateValue() {
+        return SRP6Util.generatePrivateValue(new SHA256Digest(), params.N, params.g, random);
+    }
+
+    @Benchmark
+    public byte[] salt() {
+        byte[] salt = new byte[32];
+        random.nextBytes(salt);
+        return salt;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options parent = new CommandLineOptions(args);
+        int cores = Runtime.getRuntime().availableProcessors();
+        for(int threads = 1; ; threads = Math.min(cores, threads * 2)) {
+            Options options = new OptionsBuilder()
+                    .parent(parent)
+                    .include(SRP6RandomBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+            if(threads == cores) {
+                break;
+            }
+        }
+    }
+
+}
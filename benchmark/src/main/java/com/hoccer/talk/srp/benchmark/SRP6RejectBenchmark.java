@@ -0,0 +1,107 @@
+package com.hoccer.talk.srp.benchmark;
+
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6PublicValueCheck;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.CryptoException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invalid public value flood benchmark
+ *
+ * Measures the cost of rejecting the invalid client values
+ * covered by the safeguard tests, as seen by a server under
+ * a flood of malicious login attempts. The accepted value
+ * benchmark shows the cost of a valid A for comparison.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SRP6RejectBenchmark {
+
+    @Param({"1024", "4096"})
+    String group;
+
+    @Param({"RFC5054", "STRICT"})
+    String policy;
+
+    SRP6Parameters params;
+    SRP6VerifyingServer server;
+
+    BigInteger zero;
+    BigInteger modulus;
+    BigInteger twice;
+    BigInteger degenerate;
+    BigInteger valid;
+
+    @Setup
+    public void setup() {
+        SecureRandom random = new SecureRandom();
+        params = SRP6Fixtures.parameters(group);
+        byte[] salt = SRP6Fixtures.salt(SRP6Fixtures.digest("SHA-256"));
+        BigInteger verifier = SRP6Fixtures.verifier(params, SRP6Fixtures.digest("SHA-256"), salt);
+        server = new SRP6VerifyingServer();
+        server.initVerifiable(params, verifier, SRP6Fixtures.USER, salt, SRP6Fixtures.digest("SHA-256"), random);
+        server.setPublicValueCheck(new SRP6PublicValueCheck(SRP6PublicValueCheck.Policy.valueOf(policy)));
+        server.generateServerCredentials();
+
+        zero = BigInteger.ZERO;
+        modulus = params.N;
+        twice = params.N.shiftLeft(1);
+        degenerate = params.N.subtract(BigInteger.ONE);
+        valid = params.g.modPow(new BigInteger(256, random), params.N);
+    }
+
+    @Benchmark
+    public Object rejectZero() {
+        return attempt(zero);
+    }
+
+    @Benchmark
+    public Object rejectN() {
+        return attempt(modulus);
+    }
+
+    @Benchmark
+    public Object reject2N() {
+        return attempt(twice);
+    }
+
+    /** Only rejected by the strict policy */
+    @Benchmark
+    public Object rejectNMinus1() {
+        return attempt(degenerate);
+    }
+
+    @Benchmark
+    public Object acceptValid() {
+        return attempt(valid);
+    }
+
+    private Object attempt(BigInteger A) {
+        try {
+            return server.calculateSecret(A);
+        } catch (CryptoException e) {
+            return e;
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.hoccer.talk.srp.benchmark;
+
+import com.hoccer.talk.srp.SRP6LoginThrottle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login throttle benchmark
+ *
+ * Measures the cost of a throttle check for an identity that
+ * is admitted and for one that is rejected, with all threads
+ * sharing one throttle. A rejected check should stay far below
+ * the cost of a single modular exponentiation.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class SRP6ThrottleBenchmark {
+
+    // refills faster than attempts arrive
+    SRP6LoginThrottle open;
+    // one attempt per hour, used up in setup
+    SRP6LoginThrottle closed;
+
+    byte[] identity = SRP6Fixtures.USER;
+
+    @Setup
+    public void setup() {
+        open = new SRP6LoginThrottle(1 << 20, 1000, 1, TimeUnit.NANOSECONDS);
+        closed = new SRP6LoginThrottle(1 << 20, 1, 1, TimeUnit.HOURS);
+        closed.tryAcquire(identity);
+    }
+
+    @Benchmark
+    public boolean admitted() {
+        return open.tryAcquire(identity);
+    }
+
+    @Benchmark
+    public boolean rejected() {
+        return closed.tryAcquire(identity);
+    }
+
+}
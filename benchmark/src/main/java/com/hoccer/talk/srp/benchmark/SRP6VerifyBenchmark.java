@@ -0,0 +1,134 @@
+package com.hoccer.talk.srp.benchmark;
+
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6Verification;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.CryptoException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifier check benchmark
+ *
+ * Measures the server side M1 check for matching and wrong
+ * client verifiers, and compares the constant-time comparison
+ * with {@link Arrays#equals(byte[], byte[])} for mismatches at
+ * the start and at the end of the verifier.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SRP6VerifyBenchmark {
+
+    @Param({"SHA-1", "SHA-256"})
+    String digest;
+
+    RearmableServer server;
+
+    byte[] K;
+    byte[] M1;
+    byte[] wrongFirst;
+    byte[] wrongLast;
+    byte[] M2 = new byte[64];
+
+    @Setup
+    public void setup() throws CryptoException {
+        SecureRandom random = new SecureRandom();
+        SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+        byte[] salt = SRP6Fixtures.salt(SRP6Fixtures.digest(digest));
+        BigInteger verifier = SRP6Fixtures.verifier(params, SRP6Fixtures.digest(digest), salt);
+
+        SRP6VerifyingClient client = new SRP6VerifyingClient();
+        client.init(params, SRP6Fixtures.digest(digest), random);
+        server = new RearmableServer();
+        server.initVerifiable(params, verifier, SRP6Fixtures.USER, salt, SRP6Fixtures.digest(digest), random);
+
+        BigInteger A = client.generateClientCredentials(salt, SRP6Fixtures.USER, SRP6Fixtures.PASS);
+        BigInteger B = server.generateServerCredentials();
+        client.calculateSecret(B);
+        server.calculateSecret(A);
+        K = server.key().clone();
+        M1 = client.calculateVerifier().clone();
+
+        wrongFirst = M1.clone();
+        wrongFirst[0] ^= 1;
+        wrongLast = M1.clone();
+        wrongLast[wrongLast.length - 1] ^= 1;
+    }
+
+    @Benchmark
+    public byte[] verifySuccess() throws CryptoException {
+        server.rearm(K);
+        server.verifyClient(M1, M2, 0);
+        return M2;
+    }
+
+    @Benchmark
+    public Object verifyFailure() {
+        server.rearm(K);
+        try {
+            return server.verifyClient(wrongLast);
+        } catch (CryptoException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public boolean constantTimeFirst() {
+        return SRP6Verification.verifierEquals(M1, 0, M1.length, wrongFirst);
+    }
+
+    @Benchmark
+    public boolean constantTimeLast() {
+        return SRP6Verification.verifierEquals(M1, 0, M1.length, wrongLast);
+    }
+
+    @Benchmark
+    public boolean arraysEqualsFirst() {
+        return Arrays.equals(M1, wrongFirst);
+    }
+
+    @Benchmark
+    public boolean arraysEqualsLast() {
+        return Arrays.equals(M1, wrongLast);
+    }
+
+    /** Server that can restore its session key, which verification wipes */
+    static class RearmableServer extends SRP6VerifyingServer {
+
+        byte[] keyBuffer;
+
+        byte[] key() {
+            return K;
+        }
+
+        void rearm(byte[] key) {
+            if(keyBuffer == null) {
+                keyBuffer = new byte[key.length];
+            }
+            System.arraycopy(key, 0, keyBuffer, 0, key.length);
+            K = keyBuffer;
+        }
+
+    }
+
+}
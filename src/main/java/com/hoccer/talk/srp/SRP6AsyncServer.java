@@ -0,0 +1,175 @@
+package com.hoccer.talk.srp;
+
+import java.math.BigInteger;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous facade for server handshakes
+ *
+ * Runs the expensive steps of {@link SRP6VerifyingServer} on a
+ * dedicated pool of worker threads, so that network threads only
+ * submit work and continue when the returned future completes.
+ *
+ * Admission is limited to a fixed number of pending steps,
+ * counting both running and queued ones. Steps submitted beyond
+ * that limit fail immediately with a
+ * {@link RejectedExecutionException}, shedding logins early
+ * instead of letting the queue and the latency grow.
+ *
+ * The steps of a single handshake must be submitted one after
+ * another, as the server instances are not thread-safe.
+ *
+ * This class is thread-safe.
+ *
+ */
+public class SRP6AsyncServer {
+
+    final ThreadPoolExecutor executor;
+    final Semaphore admission;
+    final int maxPending;
+
+    final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Create a facade with its own worker pool
+     *
+     * @param threads number of worker threads
+     * @param maxPending maximum number of running and queued steps
+     */
+    public SRP6AsyncServer(int threads, int maxPending) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+        if(maxPending < threads) {
+            throw new IllegalArgumentException("Pending limit must be at least the number of threads");
+        }
+        this.maxPending = maxPending;
+        this.admission = new Semaphore(maxPending);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new WorkerFactory());
+    }
+
+    /** Step one, generate B */
+    public CompletableFuture<BigInteger> generateServerCredentials(final SRP6VerifyingServer server) {
+        return submit(new Callable<BigInteger>() {
+            @Override
+            public BigInteger call() {
+                return server.generateServerCredentials();
+            }
+        });
+    }
+
+    /** Step two, calculate the secret from A */
+    public CompletableFuture<BigInteger> calculateSecret(final SRP6VerifyingServer server, final BigInteger clientA) {
+        return submit(new Callable<BigInteger>() {
+            @Override
+            public BigInteger call() throws Exception {
+                return server.calculateSecret(clientA);
+            }
+        });
+    }
+
+    /** Step three, check M1 and produce M2 */
+    public CompletableFuture<byte[]> verifyClient(final SRP6VerifyingServer server, final byte[] M1c) {
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return server.verifyClient(M1c);
+            }
+        });
+    }
+
+    /** Steps two and three in a single task */
+    public CompletableFuture<byte[]> verifyClient(
+            final SRP6VerifyingServer server, final BigInteger clientA, final byte[] M1c) {
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                server.calculateSecret(clientA);
+                return server.verifyClient(M1c);
+            }
+        });
+    }
+
+    /** Number of steps currently running or queued */
+    public int getPending() {
+        return maxPending - admission.availablePermits();
+    }
+
+    /** Number of steps rejected so far */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /** Stop accepting work, letting pending steps finish */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    private <T> CompletableFuture<T> submit(final Callable<T> task) {
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        if(!admission.tryAcquire()) {
+            rejected.incrementAndGet();
+            future.completeExceptionally(new RejectedExecutionException("Too many pending handshake steps"));
+            return future;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // release before completing so dependents see the freed slot
+                    T result = null;
+                    Throwable failure = null;
+                    try {
+                        result = task.call();
+                    } catch (Throwable t) {
+                        failure = t;
+                    } finally {
+                        admission.release();
+                    }
+                    if(failure != null) {
+                        future.completeExceptionally(failure);
+                    } else {
+                        future.complete(result);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            admission.release();
+            rejected.incrementAndGet();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /** Creates named daemon worker threads */
+    private static class WorkerFactory implements ThreadFactory {
+
+        private static final AtomicInteger POOL = new AtomicInteger();
+
+        private final int pool = POOL.incrementAndGet();
+        private final AtomicInteger thread = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread worker = new Thread(runnable, "srp-" + pool + "-worker-" + thread.incrementAndGet());
+            worker.setDaemon(true);
+            return worker;
+        }
+
+    }
+
+}
@@ -0,0 +1,171 @@
+package com.hoccer.talk.srp;
+
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.agreement.srp.SRP6Util;
+import org.bouncycastle.util.Memoable;
+
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Batch verifier generator
+ *
+ * Computes verifiers v = g^x for large numbers of accounts,
+ * for example when provisioning or migrating to another group.
+ *
+ * Records are read from an iterator and spread over a fork-join
+ * pool. Every worker thread uses its own digest and Montgomery
+ * workspace together with the shared generator table of the
+ * parameter set. Results are streamed to a {@link Listener} as
+ * soon as they are ready, in completion order.
+ *
+ * At most {@code maxInFlight} records are pending at any time,
+ * so a slow listener throttles reading from the iterator.
+ *
+ * This class is thread-safe.
+ *
+ */
+public class SRP6BatchVerifierGenerator {
+
+    /** Account data to generate a verifier for */
+    public static class Record {
+
+        final byte[] identity;
+        final byte[] password;
+        final byte[] salt;
+
+        public Record(byte[] identity, byte[] password, byte[] salt) {
+            this.identity = identity;
+            this.password = password;
+            this.salt = salt;
+        }
+
+        public byte[] getIdentity() {
+            return identity;
+        }
+
+        public byte[] getPassword() {
+            return password;
+        }
+
+        public byte[] getSalt() {
+            return salt;
+        }
+
+    }
+
+    /** Receiver of generated verifiers, called from worker threads */
+    public interface Listener {
+
+        void verifierGenerated(Record record, BigInteger verifier);
+
+        void verifierFailed(Record record, RuntimeException cause);
+
+    }
+
+    final SRP6Parameters params;
+    final Digest prototype;
+    final ForkJoinPool pool;
+    final int maxInFlight;
+
+    final ThreadLocal<Digest> digests = new ThreadLocal<Digest>() {
+        @Override
+        protected Digest initialValue() {
+            Digest digest = (Digest)((Memoable)prototype).copy();
+            digest.reset();
+            return digest;
+        }
+    };
+
+    final ThreadLocal<SRP6Montgomery.Workspace> workspaces = new ThreadLocal<SRP6Montgomery.Workspace>() {
+        @Override
+        protected SRP6Montgomery.Workspace initialValue() {
+            return params.getMontgomery().newWorkspace();
+        }
+    };
+
+    /**
+     * Create a generator
+     *
+     * The prototype digest must implement {@link Memoable}
+     * and is copied for every worker thread.
+     */
+    public SRP6BatchVerifierGenerator(SRP6Parameters params, Digest prototype, ForkJoinPool pool, int maxInFlight) {
+        if(!(prototype instanceof Memoable)) {
+            throw new IllegalArgumentException("Digest " + prototype.getAlgorithmName() + " can not be copied");
+        }
+        if(maxInFlight < 1) {
+            throw new IllegalArgumentException("Invalid number of records in flight: " + maxInFlight);
+        }
+        this.params = params;
+        this.prototype = prototype;
+        this.pool = pool;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /** Generate a single verifier on the calling thread */
+    public BigInteger generateVerifier(byte[] salt, byte[] identity, byte[] password) {
+        BigInteger x = SRP6Util.calculateX(digests.get(), params.N, salt, identity, password);
+        return params.getGeneratorTable().pow(x, workspaces.get());
+    }
+
+    /**
+     * Generate verifiers for all records
+     *
+     * Blocks until every record has been reported to the listener.
+     * Must not be called from a thread of the pool, as it would
+     * wait for records that only that thread could process.
+     *
+     * If the pool rejects a record, for example because it has
+     * been shut down, the rejection is rethrown at once. Records
+     * submitted before may still be reported afterwards.
+     *
+     * @return the number of records processed
+     * @throws IllegalStateException if called from a thread of the pool
+     * @throws RejectedExecutionException if the pool rejects a record
+     */
+    public int generate(Iterator<Record> records, final Listener listener) throws InterruptedException {
+        if(ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool) {
+            throw new IllegalStateException("Batch generation called from its own pool");
+        }
+        final Semaphore window = new Semaphore(maxInFlight);
+        int count = 0;
+        while(records.hasNext()) {
+            final Record record = records.next();
+            window.acquire();
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        BigInteger verifier;
+                        try {
+                            verifier = generateVerifier(record.salt, record.identity, record.password);
+                        } catch (RuntimeException e) {
+                            listener.verifierFailed(record, e);
+                            return;
+                        }
+                        listener.verifierGenerated(record, verifier);
+                    } finally {
+                        window.release();
+                    }
+                }
+            };
+            try {
+                pool.execute(task);
+            } catch (RejectedExecutionException e) {
+                window.release();
+                throw e;
+            }
+            count++;
+        }
+        // wait for all pending records
+        window.acquire(maxInFlight);
+        window.release(maxInFlight);
+        return count;
+    }
+
+}
@@ -0,0 +1,185 @@
+package com.hoccer.talk.srp;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caching layer in front of a verifier store
+ *
+ * Remembers the result of every lookup for a limited time,
+ * including unknown identities, so that repeated logins and
+ * retries do not reach the backing store. Entries for unknown
+ * identities use a separate, usually shorter time to live.
+ *
+ * The cache holds about {@code maxEntries} entries. When it
+ * overflows, expired entries are dropped first and then those
+ * closest to expiry, a tenth of the capacity at a time.
+ *
+ * Call {@link #invalidate} when the credentials of an identity
+ * change, for example on a password change. Loads that overlap
+ * with any invalidation are returned but not cached, so a record
+ * read before a change never outlives it.
+ *
+ * This class is thread-safe.
+ *
+ */
+public class SRP6CachingVerifierStore implements SRP6VerifierStore {
+
+    final SRP6VerifierStore backend;
+    final int maxEntries;
+    final long ttlNanos;
+    final long negativeTtlNanos;
+
+    final ConcurrentMap<SRP6IdentityKey, Entry> entries = new ConcurrentHashMap<SRP6IdentityKey, Entry>();
+
+    final AtomicLong hits = new AtomicLong();
+    final AtomicLong misses = new AtomicLong();
+    final AtomicLong evictions = new AtomicLong();
+
+    /** Incremented by every invalidation */
+    final AtomicLong epoch = new AtomicLong();
+
+    /** Set while one thread trims the cache */
+    final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * Create a cache
+     *
+     * @param backend store to load records from
+     * @param maxEntries maximum number of cached identities
+     * @param ttl time to live of known identities
+     * @param negativeTtl time to live of unknown identities
+     * @param unit unit of both times
+     */
+    public SRP6CachingVerifierStore(SRP6VerifierStore backend, int maxEntries,
+                                    long ttl, long negativeTtl, TimeUnit unit) {
+        if(maxEntries < 1) {
+            throw new IllegalArgumentException("Invalid cache size: " + maxEntries);
+        }
+        this.backend = backend;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.negativeTtlNanos = unit.toNanos(negativeTtl);
+    }
+
+    @Override
+    public SRP6VerifierRecord lookup(byte[] identity) {
+        SRP6IdentityKey key = new SRP6IdentityKey(identity);
+        long now = System.nanoTime();
+        Entry entry = entries.get(key);
+        if(entry != null && now - entry.expires < 0) {
+            hits.incrementAndGet();
+            return entry.record;
+        }
+        misses.incrementAndGet();
+        long started = epoch.get();
+        SRP6VerifierRecord record = backend.lookup(identity);
+        long ttl = (record != null) ? ttlNanos : negativeTtlNanos;
+        if(ttl > 0 && epoch.get() == started) {
+            Entry loaded = new Entry(record, now + ttl);
+            // do not resurrect an entry invalidated during the load
+            boolean published = (entry == null)
+                    ? entries.putIfAbsent(key, loaded) == null
+                    : entries.replace(key, entry, loaded);
+            // an invalidation may have slipped in between the check and the put
+            if(published && epoch.get() != started) {
+                entries.remove(key, loaded);
+            }
+            if(entries.size() > maxEntries) {
+                evict(now);
+            }
+        }
+        return record;
+    }
+
+    /** Drop the cached entry of an identity */
+    public void invalidate(byte[] identity) {
+        epoch.incrementAndGet();
+        entries.remove(new SRP6IdentityKey(identity));
+    }
+
+    /** Drop all cached entries */
+    public void invalidateAll() {
+        epoch.incrementAndGet();
+        entries.clear();
+    }
+
+    /** Number of cached identities */
+    public int size() {
+        return entries.size();
+    }
+
+    /** Number of lookups answered from the cache */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /** Number of lookups passed to the backing store */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /** Number of entries dropped because the cache was full */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private void evict(long now) {
+        if(!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            // expired entries first
+            Iterator<Entry> iterator = entries.values().iterator();
+            while(iterator.hasNext()) {
+                if(now - iterator.next().expires >= 0) {
+                    iterator.remove();
+                }
+            }
+            // then those closest to expiry, in a single pass
+            int excess = entries.size() - (maxEntries - Math.max(1, maxEntries / 10));
+            if(excess <= 0) {
+                return;
+            }
+            long[] remaining = new long[entries.size()];
+            int count = 0;
+            for(Entry entry: entries.values()) {
+                if(count == remaining.length) {
+                    break;
+                }
+                remaining[count++] = entry.expires - now;
+            }
+            Arrays.sort(remaining, 0, count);
+            long threshold = remaining[Math.min(excess, count) - 1];
+            iterator = entries.values().iterator();
+            while(iterator.hasNext() && excess > 0) {
+                if(iterator.next().expires - now <= threshold) {
+                    iterator.remove();
+                    evictions.incrementAndGet();
+                    excess--;
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /** Cached lookup result, record is null for unknown identities */
+    static final class Entry {
+
+        final SRP6VerifierRecord record;
+        final long expires;
+
+        Entry(SRP6VerifierRecord record, long expires) {
+            this.record = record;
+            this.expires = expires;
+        }
+
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.hoccer.talk.srp;
+
+import org.bouncycastle.crypto.Digest;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Streaming encoder for digest input
+ *
+ * Feeds the unsigned big-endian encoding of numbers into a
+ * digest, optionally left-padded with zeros to a fixed length
+ * as PAD() in RFC 5054. Padding is written in chunks from a
+ * shared block of zeros, so no padded copy of a value is ever
+ * built.
+ *
+ * Every number still costs one transient array of its magnitude,
+ * taken from {@link BigInteger#toByteArray()}. BigInteger offers
+ * no other bulk access to its magnitude, and reading it bit by bit
+ * into a reusable buffer is far slower than the allocation.
+ *
+ * The encoder also carries a small buffer for intermediate
+ * digest outputs, which is large enough for digests of up
+ * to {@link #CHUNK} bytes.
+ *
+ * Not thread-safe. Use one encoder per handshake or thread.
+ *
+ */
+public class SRP6DigestEncoder {
+
+    /** Chunk size for padding and size of the output buffer */
+    public static final int CHUNK = 64;
+
+    private static final byte[] ZEROS = new byte[CHUNK];
+
+    final byte[] buffer = new byte[CHUNK];
+
+    /**
+     * Feed the unsigned encoding of a number
+     *
+     * Produces the same bytes as {@link org.bouncycastle.util.BigIntegers#asUnsignedByteArray(BigInteger)}.
+     */
+    public void update(Digest digest, BigInteger number) {
+        updatePadded(digest, number, 0);
+    }
+
+    /**
+     * Feed the unsigned encoding of a number, left-padded to length bytes
+     *
+     * Numbers longer than the padding length are fed unpadded.
+     */
+    public void updatePadded(Digest digest, BigInteger number, int length) {
+        // the one allocation per value, see the class comment
+        byte[] bytes = number.toByteArray();
+        int off = (bytes[0] == 0 && bytes.length > 1) ? 1 : 0;
+        int len = bytes.length - off;
+        for(int pad = length - len; pad > 0; pad -= CHUNK) {
+            digest.update(ZEROS, 0, Math.min(pad, CHUNK));
+        }
+        digest.update(bytes, off, len);
+    }
+
+    /** Hash data into the internal buffer and return it */
+    byte[] hash(Digest digest, byte[] data) {
+        digest.update(data, 0, data.length);
+        digest.doFinal(buffer, 0);
+        return buffer;
+    }
+
+    /** Finish the digest into the internal buffer and return it */
+    byte[] doFinal(Digest digest) {
+        digest.doFinal(buffer, 0);
+        return buffer;
+    }
+
+    /** Zero the internal buffer */
+    public void clear() {
+        Arrays.fill(buffer, (byte)0);
+    }
+
+}
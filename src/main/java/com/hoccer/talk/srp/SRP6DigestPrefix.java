@@ -0,0 +1,82 @@
+package com.hoccer.talk.srp;
+
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.util.Memoable;
+
+import java.util.Arrays;
+
+/**
+ * Digest state after the per-account prefix of M1
+ *
+ * M1 = H(H(N) xor H(g) | H(I) | s | A | B | K) starts with
+ * values that are fixed for an account. This holds a snapshot
+ * of the digest state after that prefix, so a handshake only
+ * restores the snapshot and hashes A, B and K. This saves the
+ * hash of I and the compression of the prefix on every login.
+ *
+ * The digest must implement {@link Memoable}, which all digests
+ * of BouncyCastle do. A prefix may be kept alongside stored
+ * account data, see {@link SRP6VerifierRecord#getDigestPrefix}.
+ *
+ * Instances are immutable and can be shared between threads.
+ *
+ */
+public final class SRP6DigestPrefix {
+
+    final String digestAlgorithm;
+    final byte[] identity;
+    final byte[] salt;
+    final Memoable state;
+
+    public SRP6DigestPrefix(SRP6Group group, Digest digest, byte[] identity, byte[] salt) {
+        this(group, digest, identity, salt, null);
+    }
+
+    /**
+     * Hash the prefix for the given account
+     *
+     * Takes H(I) from the given cache if it is not null. The
+     * digest is reset afterwards.
+     */
+    public SRP6DigestPrefix(SRP6Group group, Digest digest, byte[] identity, byte[] salt, SRP6IdentityHashCache hashes) {
+        if(!(digest instanceof Memoable)) {
+            throw new IllegalArgumentException("Digest " + digest.getAlgorithmName() + " can not be copied");
+        }
+        if(!group.matches(digest)) {
+            throw new IllegalArgumentException("Group constants are not for digest " + digest.getAlgorithmName());
+        }
+        byte[] H_I = (hashes != null)
+                ? hashes.get(digest, identity)
+                : SRP6Verification.calculateHash(digest, identity);
+        byte[] H_Ng = group.getH_Ng();
+        digest.reset();
+        digest.update(H_Ng, 0, H_Ng.length);
+        digest.update(H_I, 0, H_I.length);
+        digest.update(salt, 0, salt.length);
+        this.state = ((Memoable)digest).copy();
+        digest.reset();
+        this.digestAlgorithm = digest.getAlgorithmName();
+        this.identity = identity.clone();
+        this.salt = salt.clone();
+    }
+
+    public String getDigestAlgorithm() {
+        return digestAlgorithm;
+    }
+
+    /** Returns true if this prefix is for the given digest and account */
+    public boolean matches(Digest digest, byte[] identity, byte[] salt) {
+        return digestAlgorithm.equals(digest.getAlgorithmName())
+                && Arrays.equals(this.identity, identity)
+                && Arrays.equals(this.salt, salt);
+    }
+
+    /** Set the digest to the state after the prefix */
+    public void restore(Digest digest) {
+        if(!digestAlgorithm.equals(digest.getAlgorithmName())) {
+            throw new IllegalArgumentException("Prefix is not for digest " + digest.getAlgorithmName());
+        }
+        ((Memoable)digest).reset(state);
+    }
+
+}
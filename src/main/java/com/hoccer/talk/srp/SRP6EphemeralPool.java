@@ -0,0 +1,253 @@
+package com.hoccer.talk.srp;
+
+import org.bouncycastle.util.BigIntegers;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pool of precomputed server ephemerals
+ *
+ * The private value b and the power g^b do not depend on the
+ * account, so they can be generated ahead of time. This pool
+ * holds such pairs for a single group and hands each of them
+ * out exactly once, leaving only k*v + g^b on the request path.
+ *
+ * The pool is refilled by a background thread started with
+ * {@link #start()}. The refill target adapts to demand: it
+ * grows whenever a request finds the pool empty and shrinks
+ * slowly while the pool stays idle. Requests never block;
+ * when the pool is empty they count as a miss and the server
+ * computes its ephemeral inline.
+ *
+ * This class is thread-safe and lock-free on the request path.
+ *
+ */
+public class SRP6EphemeralPool {
+
+    /** Interval in which the refill thread adapts its target */
+    static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    final SRP6Parameters params;
+    final SecureRandom random;
+    final int capacity;
+    final int minimum;
+
+    final Queue<Ephemeral> pairs = new ConcurrentLinkedQueue<Ephemeral>();
+    final AtomicInteger depth = new AtomicInteger();
+
+    final AtomicLong hits = new AtomicLong();
+    final AtomicLong misses = new AtomicLong();
+    final AtomicLong generated = new AtomicLong();
+
+    /** Current refill target, between minimum and capacity */
+    volatile int target;
+
+    volatile Thread refiller;
+    volatile boolean running;
+
+    public SRP6EphemeralPool(SRP6Parameters params, SecureRandom random, int capacity) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Invalid pool capacity: " + capacity);
+        }
+        this.params = params;
+        this.random = SRP6RandomSource.orDefault(random);
+        this.capacity = capacity;
+        this.minimum = Math.max(1, capacity / 8);
+        this.target = minimum;
+    }
+
+    public SRP6Parameters getParameters() {
+        return params;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** Number of pairs currently available */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /** Current refill target */
+    public int getTarget() {
+        return target;
+    }
+
+    /** Number of requests served from the pool */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /** Number of requests that found the pool empty */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /** Number of pairs generated so far */
+    public long getGenerated() {
+        return generated.get();
+    }
+
+    /**
+     * Take a pair out of the pool
+     *
+     * Returns null if the pool is empty. The returned pair
+     * is owned by the caller and never handed out again.
+     */
+    public Ephemeral take() {
+        Ephemeral pair = pairs.poll();
+        if(pair == null) {
+            misses.incrementAndGet();
+            wakeRefiller();
+            return null;
+        }
+        hits.incrementAndGet();
+        if(depth.decrementAndGet() < target / 2) {
+            wakeRefiller();
+        }
+        return pair;
+    }
+
+    /**
+     * Generate pairs on the calling thread
+     *
+     * Stops early when the pool reaches its capacity.
+     * Returns the number of pairs added.
+     */
+    public int fill(int count) {
+        SRP6Montgomery.Workspace ws = params.getMontgomery().newWorkspace();
+        int added = 0;
+        while(added < count && offer(generate(ws))) {
+            added++;
+        }
+        ws.clear();
+        return added;
+    }
+
+    /** Start the background refill thread */
+    public synchronized void start() {
+        if(refiller != null) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                refill();
+            }
+        }, "srp-ephemeral-" + params.N.bitLength());
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        refiller = thread;
+        thread.start();
+    }
+
+    /** Stop the refill thread and wipe all pooled pairs */
+    public synchronized void close() {
+        running = false;
+        Thread thread = refiller;
+        refiller = null;
+        if(thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Ephemeral pair;
+        while((pair = pairs.poll()) != null) {
+            depth.decrementAndGet();
+            pair.wipe();
+        }
+    }
+
+    private void refill() {
+        SRP6Montgomery.Workspace ws = params.getMontgomery().newWorkspace();
+        long seenMisses = misses.get();
+        while(running) {
+            while(running && depth.get() < target) {
+                if(!offer(generate(ws))) {
+                    break;
+                }
+            }
+            LockSupport.parkNanos(this, IDLE_NANOS);
+            // grow quickly under demand, shrink slowly when idle
+            long currentMisses = misses.get();
+            if(currentMisses != seenMisses) {
+                target = Math.min(capacity, target * 2);
+            } else if(depth.get() >= target) {
+                target = Math.max(minimum, target - target / 8);
+            }
+            seenMisses = currentMisses;
+        }
+        ws.clear();
+    }
+
+    private void wakeRefiller() {
+        Thread thread = refiller;
+        if(thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private boolean offer(Ephemeral pair) {
+        int current;
+        do {
+            current = depth.get();
+            if(current >= capacity) {
+                pair.wipe();
+                return false;
+            }
+        } while(!depth.compareAndSet(current, current + 1));
+        pairs.offer(pair);
+        return true;
+    }
+
+    /** Generate a pair the same way as {@link org.bouncycastle.crypto.agreement.srp.SRP6Util#generatePrivateValue} */
+    Ephemeral generate(SRP6Montgomery.Workspace ws) {
+        BigInteger N = params.N;
+        int minBits = Math.min(256, N.bitLength() / 2);
+        BigInteger min = BigInteger.ONE.shiftLeft(minBits - 1);
+        BigInteger max = N.subtract(BigInteger.ONE);
+        BigInteger b = BigIntegers.createRandomInRange(min, max, random);
+        SRP6Residue power = new SRP6Residue(params.getMontgomery()).setPower(params.getGeneratorTable(), b, ws);
+        generated.incrementAndGet();
+        return new Ephemeral(b, power);
+    }
+
+    /**
+     * A single precomputed ephemeral
+     *
+     * Holds the private value b and g^b in Montgomery form.
+     */
+    public static class Ephemeral {
+
+        final BigInteger privateValue;
+        final SRP6Residue power;
+
+        Ephemeral(BigInteger privateValue, SRP6Residue power) {
+            this.privateValue = privateValue;
+            this.power = power;
+        }
+
+        public BigInteger getPrivateValue() {
+            return privateValue;
+        }
+
+        /** Zero the precomputed power */
+        void wipe() {
+            power.clear();
+        }
+
+    }
+
+}
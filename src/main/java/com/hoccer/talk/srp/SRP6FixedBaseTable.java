@@ -0,0 +1,267 @@
+package com.hoccer.talk.srp;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Fixed-base exponentiation table
+ *
+ * Precomputes powers of a fixed base so that base^e mod N
+ * can be evaluated using the Lim-Lee comb method.
+ *
+ * The exponent range [0, 2^bits) is laid out as {@code teeth}
+ * rows, each of which is divided into {@code blocks} blocks of
+ * {@code width} bits. For every block the table holds the
+ * products of all subsets of the row bases, so an exponentiation
+ * costs {@code width} squarings and at most {@code blocks * width}
+ * multiplications instead of the {@code bits} squarings of a
+ * generic square-and-multiply.
+ *
+ * Table entries are kept in Montgomery form of the given engine.
+ *
+ * Exponents that do not fit into the table range are
+ * delegated to {@link BigInteger#modPow(BigInteger, BigInteger)}.
+ *
+ * Instances are immutable and can be shared between threads.
+ *
+ */
+public class SRP6FixedBaseTable {
+
+    final SRP6Montgomery engine;
+    final BigInteger base;
+
+    final int bits;
+    final int teeth;
+    final int blocks;
+    final int width;
+    final int span;
+
+    final long[][][] table;
+
+    public SRP6FixedBaseTable(BigInteger N, BigInteger base) {
+        this(new SRP6Montgomery(N), base);
+    }
+
+    public SRP6FixedBaseTable(SRP6Montgomery engine, BigInteger base) {
+        this(engine, base, engine.getModulus().bitLength(),
+                defaultTeeth(engine.getModulus().bitLength()),
+                defaultBlocks(engine.getModulus().bitLength()));
+    }
+
+    public SRP6FixedBaseTable(SRP6Montgomery engine, BigInteger base, int bits, int teeth, int blocks) {
+        this(engine, base, bits, teeth, blocks, null);
+    }
+
+    /** Create a table from precomputed entries, or build them if null */
+    SRP6FixedBaseTable(SRP6Montgomery engine, BigInteger base, int bits, int teeth, int blocks, long[][][] table) {
+        if(teeth < 1 || teeth > 16) {
+            throw new IllegalArgumentException("Invalid number of comb teeth: " + teeth);
+        }
+        if(blocks < 1) {
+            throw new IllegalArgumentException("Invalid number of comb blocks: " + blocks);
+        }
+        this.engine = engine;
+        this.base = base.mod(engine.getModulus());
+        this.bits = bits;
+        this.teeth = teeth;
+        this.blocks = blocks;
+        this.width = (bits + teeth * blocks - 1) / (teeth * blocks);
+        this.span = width * blocks;
+        this.table = (table != null) ? table : buildTable();
+    }
+
+    /** Choose number of rows for the given exponent size */
+    static int defaultTeeth(int bits) {
+        return (bits > 1024) ? 8 : 6;
+    }
+
+    /** Choose number of blocks per row for the given exponent size */
+    static int defaultBlocks(int bits) {
+        return (bits > 2048) ? 4 : 2;
+    }
+
+    private long[][][] buildTable() {
+        BigInteger N = engine.getModulus();
+        SRP6Montgomery.Workspace ws = engine.newWorkspace();
+        // powers base^(2^(n*width)) for every block of every row
+        long[][] powers = new long[teeth * blocks][];
+        BigInteger step = BigInteger.ONE.shiftLeft(width);
+        BigInteger current = base;
+        for(int n = 0; n < powers.length; n++) {
+            powers[n] = engine.newElement();
+            engine.toMontgomery(current, powers[n], ws);
+            current = current.modPow(step, N);
+        }
+        // products of all row subsets, per block
+        long[][][] result = new long[blocks][1 << teeth][];
+        for(int s = 0; s < blocks; s++) {
+            long[][] entries = result[s];
+            entries[0] = engine.newElement();
+            engine.setOne(entries[0]);
+            for(int j = 1; j < entries.length; j++) {
+                int high = 31 - Integer.numberOfLeadingZeros(j);
+                entries[j] = engine.newElement();
+                engine.multiply(entries[j ^ (1 << high)], powers[high * blocks + s], entries[j], ws);
+            }
+        }
+        return result;
+    }
+
+    public SRP6Montgomery getEngine() {
+        return engine;
+    }
+
+    public BigInteger getModulus() {
+        return engine.getModulus();
+    }
+
+    public BigInteger getBase() {
+        return base;
+    }
+
+    /** Returns true if the given exponent can be handled by the table */
+    public boolean covers(BigInteger exponent) {
+        return exponent.signum() >= 0 && exponent.bitLength() <= bits;
+    }
+
+    /** Calculate base^exponent mod N */
+    public BigInteger pow(BigInteger exponent) {
+        return pow(exponent, engine.newWorkspace());
+    }
+
+    /** Calculate base^exponent mod N using the given workspace */
+    public BigInteger pow(BigInteger exponent, SRP6Montgomery.Workspace ws) {
+        if(!covers(exponent)) {
+            return base.modPow(exponent, engine.getModulus());
+        }
+        long[] result = engine.newElement();
+        powMontgomery(exponent, result, ws);
+        return engine.fromMontgomery(result, ws);
+    }
+
+    /**
+     * Calculate base^exponent mod N, spreading the comb blocks over a pool
+     *
+     * Uses the sequential method if the pool is null.
+     */
+    public BigInteger pow(BigInteger exponent, SRP6Montgomery.Workspace ws, ForkJoinPool pool) {
+        if(!covers(exponent)) {
+            return base.modPow(exponent, engine.getModulus());
+        }
+        long[] result = engine.newElement();
+        powMontgomery(exponent, result, ws, pool);
+        return engine.fromMontgomery(result, ws);
+    }
+
+    /**
+     * Calculate base^exponent in Montgomery form, one comb block per task
+     *
+     * Every block is evaluated into its own accumulator with its
+     * own squarings, all but the first one on the given pool, and
+     * the accumulators are multiplied at the end. This costs
+     * {@code (blocks - 1) * width} extra squarings in total but
+     * cuts the latency to roughly that of a single block.
+     *
+     * Uses the sequential method if the pool is null.
+     */
+    public void powMontgomery(final BigInteger exponent, long[] out, SRP6Montgomery.Workspace ws, ForkJoinPool pool) {
+        if(pool == null || blocks == 1) {
+            powMontgomery(exponent, out, ws);
+            return;
+        }
+        if(!covers(exponent)) {
+            throw new IllegalArgumentException("Exponent out of table range");
+        }
+        List<ForkJoinTask<long[]>> tasks = new ArrayList<ForkJoinTask<long[]>>(blocks - 1);
+        for(int s = 1; s < blocks; s++) {
+            final int block = s;
+            tasks.add(pool.submit(new Callable<long[]>() {
+                @Override
+                public long[] call() {
+                    SRP6Montgomery.Workspace own = engine.newWorkspace();
+                    long[] acc = engine.newElement();
+                    powBlock(exponent, block, acc, own);
+                    own.clear();
+                    return acc;
+                }
+            }));
+        }
+        powBlock(exponent, 0, out, ws);
+        for(ForkJoinTask<long[]> task: tasks) {
+            long[] acc = task.join();
+            engine.multiply(out, acc, out, ws);
+            Arrays.fill(acc, 0);
+        }
+    }
+
+    /** Evaluate the part of the comb that belongs to a single block */
+    private void powBlock(BigInteger exponent, int s, long[] out, SRP6Montgomery.Workspace ws) {
+        boolean started = false;
+        for(int i = width - 1; i >= 0; i--) {
+            if(started) {
+                engine.square(out, out, ws);
+            }
+            int index = combIndex(exponent, s * width + i);
+            if(index != 0) {
+                if(started) {
+                    engine.multiply(out, table[s][index], out, ws);
+                } else {
+                    System.arraycopy(table[s][index], 0, out, 0, engine.getSize());
+                    started = true;
+                }
+            }
+        }
+        if(!started) {
+            engine.setOne(out);
+        }
+    }
+
+    /**
+     * Calculate base^exponent in Montgomery form
+     *
+     * The exponent must be covered by the table.
+     */
+    public void powMontgomery(BigInteger exponent, long[] out, SRP6Montgomery.Workspace ws) {
+        if(!covers(exponent)) {
+            throw new IllegalArgumentException("Exponent out of table range");
+        }
+        boolean started = false;
+        for(int i = width - 1; i >= 0; i--) {
+            if(started) {
+                engine.square(out, out, ws);
+            }
+            for(int s = blocks - 1; s >= 0; s--) {
+                int index = combIndex(exponent, s * width + i);
+                if(index != 0) {
+                    if(started) {
+                        engine.multiply(out, table[s][index], out, ws);
+                    } else {
+                        System.arraycopy(table[s][index], 0, out, 0, engine.getSize());
+                        started = true;
+                    }
+                }
+            }
+        }
+        if(!started) {
+            engine.setOne(out);
+        }
+    }
+
+    /** Collect the given bit of every row of the exponent into a table index */
+    int combIndex(BigInteger exponent, int bit) {
+        int index = 0;
+        for(int k = teeth - 1; k >= 0; k--) {
+            index <<= 1;
+            if(exponent.testBit(k * span + bit)) {
+                index |= 1;
+            }
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.hoccer.talk.srp;
+
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.agreement.srp.SRP6Util;
+
+import java.math.BigInteger;
+
+/**
+ * Per-group constants for a digest algorithm
+ *
+ * Holds the values that depend only on the SRP group and
+ * the digest algorithm, so they are computed once instead
+ * of on every handshake:
+ *
+ *   k      = H(N, PAD(g))
+ *   H_Ng   = H(N) xor H(g)
+ *   length = byte length of N, used for PAD()
+ *
+ * Instances are immutable and thread-safe. Obtain shared
+ * instances through {@link SRP6Parameters#getGroup(Digest)}.
+ *
+ */
+public class SRP6Group {
+
+    final SRP6Parameters params;
+    final String digestAlgorithm;
+    final int digestSize;
+
+    final BigInteger k;
+    final byte[] H_Ng;
+    final int length;
+
+    /** N - 1, the largest residue */
+    final BigInteger upper;
+
+    /** k*R in Montgomery form, created on first use */
+    volatile SRP6Residue multiplier;
+
+    public SRP6Group(SRP6Parameters params, Digest digest) {
+        this(params, digest.getAlgorithmName(), digest.getDigestSize(),
+                SRP6Util.calculateK(digest, params.N, params.g),
+                SRP6Verification.calculateH_Ng(digest, params.N, params.g));
+    }
+
+    /** Create a group from previously calculated constants */
+    SRP6Group(SRP6Parameters params, String digestAlgorithm, int digestSize, BigInteger k, byte[] H_Ng) {
+        this.params = params;
+        this.digestAlgorithm = digestAlgorithm;
+        this.digestSize = digestSize;
+        this.k = k;
+        this.H_Ng = H_Ng;
+        this.length = (params.N.bitLength() + 7) / 8;
+        this.upper = params.N.subtract(BigInteger.ONE);
+    }
+
+    public SRP6Parameters getParameters() {
+        return params;
+    }
+
+    public BigInteger getN() {
+        return params.N;
+    }
+
+    public BigInteger getG() {
+        return params.g;
+    }
+
+    public String getDigestAlgorithm() {
+        return digestAlgorithm;
+    }
+
+    public int getDigestSize() {
+        return digestSize;
+    }
+
+    /** Multiplier parameter k = H(N, PAD(g)) */
+    public BigInteger getK() {
+        return k;
+    }
+
+    /**
+     * Get H(N) xor H(g)
+     *
+     * The returned array is shared and must not be modified.
+     */
+    public byte[] getH_Ng() {
+        return H_Ng;
+    }
+
+    /** Byte length of N, the width of padded values */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Get k as a factor for plain values
+     *
+     * Holds k*R in Montgomery form, so multiplying the plain
+     * limbs of v with it gives k*v in Montgomery form with a
+     * single multiplication. The residue is shared and must
+     * not be modified.
+     */
+    SRP6Residue getMultiplier() {
+        SRP6Residue residue = multiplier;
+        if(residue == null) {
+            SRP6Montgomery engine = params.getMontgomery();
+            BigInteger kR = k.shiftLeft(32 * engine.getSize()).mod(params.N);
+            SRP6Montgomery.Workspace ws = engine.newWorkspace();
+            residue = new SRP6Residue(engine).set(kR, ws);
+            ws.clear();
+            multiplier = residue;
+        }
+        return residue;
+    }
+
+    /** Returns true if this group can be used with the given digest */
+    public boolean matches(Digest digest) {
+        return digestAlgorithm.equals(digest.getAlgorithmName());
+    }
+
+}
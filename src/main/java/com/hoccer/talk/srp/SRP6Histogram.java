@@ -0,0 +1,143 @@
+package com.hoccer.talk.srp;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram
+ *
+ * Records non-negative values into log-linear buckets: every
+ * power of two is split into {@code 2^SUB_BITS} sub-buckets,
+ * giving a relative precision of 12.5% over the whole range
+ * of a long. Recording is two atomic additions, to the bucket of
+ * the value and to the running total, on one of several stripes
+ * selected by the recording thread, so that concurrent handshakes
+ * rarely contend on the same cache line.
+ *
+ * Reads sum up all stripes. The count is derived from the buckets,
+ * so it always agrees with the percentiles, while the total may
+ * lag behind by the values being recorded at the time.
+ *
+ * This class is thread-safe.
+ *
+ */
+public class SRP6Histogram {
+
+    static final int SUB_BITS = 3;
+    static final int SUB_COUNT = 1 << SUB_BITS;
+    static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+    /** Slots per stripe, with the sum at the end */
+    static final int SLOTS = BUCKETS + 1;
+
+    final AtomicLongArray[] stripes;
+    final int mask;
+
+    public SRP6Histogram() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public SRP6Histogram(int concurrency) {
+        int count = Integer.highestOneBit(Math.max(1, Math.min(concurrency, 64)) * 2 - 1);
+        this.stripes = new AtomicLongArray[count];
+        for(int i = 0; i < count; i++) {
+            stripes[i] = new AtomicLongArray(SLOTS);
+        }
+        this.mask = count - 1;
+    }
+
+    /** Record a value, negative values are recorded as zero */
+    public void record(long value) {
+        if(value < 0) {
+            value = 0;
+        }
+        AtomicLongArray stripe = stripes[(int)Thread.currentThread().getId() & mask];
+        stripe.incrementAndGet(bucket(value));
+        stripe.addAndGet(BUCKETS, value);
+    }
+
+    /** Number of recorded values */
+    public long getCount() {
+        long count = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            count += sum(i);
+        }
+        return count;
+    }
+
+    /** Sum of all recorded values */
+    public long getTotal() {
+        return sum(BUCKETS);
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return (count == 0) ? 0 : (double)getTotal() / count;
+    }
+
+    /**
+     * Get the value at the given percentile
+     *
+     * Returns the upper bound of the bucket containing the
+     * percentile, or zero if nothing has been recorded.
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            counts[i] = sum(i);
+            count += counts[i];
+        }
+        if(count == 0) {
+            return 0;
+        }
+        long rank = (long)Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * count);
+        rank = Math.max(1, rank);
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if(seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    /** Clear all recorded values */
+    public void reset() {
+        for(AtomicLongArray stripe: stripes) {
+            for(int i = 0; i < SLOTS; i++) {
+                stripe.set(i, 0);
+            }
+        }
+    }
+
+    private long sum(int slot) {
+        long sum = 0;
+        for(AtomicLongArray stripe: stripes) {
+            sum += stripe.get(slot);
+        }
+        return sum;
+    }
+
+    /** Bucket index of a non-negative value */
+    static int bucket(long value) {
+        if(value < SUB_COUNT) {
+            return (int)value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int)(value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /** Largest value that falls into the given bucket */
+    static long upperBound(int bucket) {
+        if(bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_COUNT + SUB_BITS - 1;
+        int sub = bucket % SUB_COUNT;
+        long low = (long)(SUB_COUNT + sub) << (exponent - SUB_BITS);
+        return low + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+}
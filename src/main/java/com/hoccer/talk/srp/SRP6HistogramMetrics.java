@@ -0,0 +1,228 @@
+package com.hoccer.talk.srp;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Metrics listener collecting phase latency histograms
+ *
+ * Keeps one {@link SRP6Histogram} per role, phase, group and
+ * digest, so that timings of different group sizes are not
+ * mixed, and counts failures by the same key and their reason.
+ *
+ * Groups are kept in a table of fixed size, filled in the order
+ * they are first seen. A group is found by a short scan of the
+ * table, and recording a phase or a failure of a known group
+ * and reason does not allocate. Groups beyond the size of the
+ * table share one entry, reported as "other", and so do failure
+ * reasons beyond {@link #MAX_REASONS} per group.
+ *
+ * Histograms are striped and not small, so each one is only
+ * created when its first value is recorded.
+ *
+ * This class is thread-safe.
+ *
+ */
+public class SRP6HistogramMetrics implements SRP6Metrics {
+
+    /** Default number of groups tracked separately */
+    public static final int DEFAULT_GROUPS = 16;
+
+    /** Maximum number of failure reasons counted separately per group */
+    public static final int MAX_REASONS = 32;
+
+    static final String OTHER = "other";
+
+    static final Role[] ROLES = Role.values();
+    static final Phase[] PHASES = Phase.values();
+
+    /** Histograms and failure counts of one group and digest */
+    static class Entry {
+
+        final SRP6Group group;
+        final BigInteger N;
+        final String digestAlgorithm;
+        final String name;
+
+        final AtomicReferenceArray<SRP6Histogram> histograms =
+                new AtomicReferenceArray<SRP6Histogram>(ROLES.length * PHASES.length);
+
+        /** Failure counts per role and phase by reason */
+        final ConcurrentMap<String, AtomicLongArray> failures = new ConcurrentHashMap<String, AtomicLongArray>();
+
+        Entry(SRP6Group group) {
+            this.group = group;
+            if(group == null) {
+                this.N = null;
+                this.digestAlgorithm = null;
+                this.name = OTHER;
+            } else {
+                this.N = group.getN();
+                this.digestAlgorithm = group.getDigestAlgorithm();
+                this.name = N.bitLength() + " " + digestAlgorithm;
+            }
+        }
+
+        SRP6Histogram histogram(int index) {
+            SRP6Histogram histogram = histograms.get(index);
+            if(histogram == null) {
+                SRP6Histogram created = new SRP6Histogram();
+                if(histograms.compareAndSet(index, null, created)) {
+                    return created;
+                }
+                histogram = histograms.get(index);
+            }
+            return histogram;
+        }
+
+        boolean matches(SRP6Group other) {
+            return group == other
+                    || (N.equals(other.getN()) && digestAlgorithm.equals(other.getDigestAlgorithm()));
+        }
+
+        AtomicLongArray failures(String reason) {
+            AtomicLongArray counts = failures.get(reason);
+            if(counts == null) {
+                if(failures.size() >= MAX_REASONS) {
+                    reason = OTHER;
+                }
+                AtomicLongArray created = new AtomicLongArray(ROLES.length * PHASES.length);
+                counts = failures.putIfAbsent(reason, created);
+                if(counts == null) {
+                    counts = created;
+                }
+            }
+            return counts;
+        }
+
+    }
+
+    final AtomicReferenceArray<Entry> entries;
+
+    final Entry overflow = new Entry(null);
+
+    public SRP6HistogramMetrics() {
+        this(DEFAULT_GROUPS);
+    }
+
+    /** Create a listener tracking up to the given number of groups separately */
+    public SRP6HistogramMetrics(int groups) {
+        if(groups < 1) {
+            throw new IllegalArgumentException("Invalid number of groups: " + groups);
+        }
+        this.entries = new AtomicReferenceArray<Entry>(groups);
+    }
+
+    @Override
+    public void phaseCompleted(Role role, Phase phase, SRP6Group group, long nanos) {
+        entry(group).histogram(index(role, phase)).record(nanos);
+    }
+
+    @Override
+    public void phaseFailed(Role role, Phase phase, SRP6Group group, String reason) {
+        entry(group).failures(String.valueOf(reason)).incrementAndGet(index(role, phase));
+    }
+
+    /**
+     * Get the latency histogram of a phase for a group, in nanoseconds
+     *
+     * Returns null if nothing has been recorded for the group.
+     */
+    public SRP6Histogram getHistogram(Role role, Phase phase, SRP6Group group) {
+        Entry entry = find(group);
+        return (entry == null) ? null : entry.histograms.get(index(role, phase));
+    }
+
+    /**
+     * Get all latency histograms that have recorded values
+     *
+     * Keys consist of role, phase, group size and digest algorithm.
+     */
+    public Map<String, SRP6Histogram> getHistograms() {
+        Map<String, SRP6Histogram> result = new HashMap<String, SRP6Histogram>();
+        for(int i = 0; i <= entries.length(); i++) {
+            Entry entry = (i < entries.length()) ? entries.get(i) : overflow;
+            if(entry == null) {
+                continue;
+            }
+            for(Role role: ROLES) {
+                for(Phase phase: PHASES) {
+                    SRP6Histogram histogram = entry.histograms.get(index(role, phase));
+                    if(histogram != null) {
+                        result.put(role + " " + phase + " " + entry.name, histogram);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get failure counts
+     *
+     * Keys consist of role, phase, group size, digest
+     * algorithm and the failure reason.
+     */
+    public Map<String, Long> getFailures() {
+        Map<String, Long> result = new HashMap<String, Long>();
+        for(int i = 0; i <= entries.length(); i++) {
+            Entry entry = (i < entries.length()) ? entries.get(i) : overflow;
+            if(entry == null) {
+                continue;
+            }
+            for(Map.Entry<String, AtomicLongArray> failure: entry.failures.entrySet()) {
+                for(Role role: ROLES) {
+                    for(Phase phase: PHASES) {
+                        long count = failure.getValue().get(index(role, phase));
+                        if(count > 0) {
+                            result.put(role + " " + phase + " " + entry.name + ": " + failure.getKey(), count);
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Find or claim the entry of a group */
+    private Entry entry(SRP6Group group) {
+        for(int i = 0; i < entries.length(); i++) {
+            Entry entry = entries.get(i);
+            if(entry == null) {
+                Entry created = new Entry(group);
+                if(entries.compareAndSet(i, null, created)) {
+                    return created;
+                }
+                entry = entries.get(i);
+            }
+            if(entry.matches(group)) {
+                return entry;
+            }
+        }
+        return overflow;
+    }
+
+    /** Find the entry of a group without claiming one */
+    private Entry find(SRP6Group group) {
+        for(int i = 0; i < entries.length(); i++) {
+            Entry entry = entries.get(i);
+            if(entry == null) {
+                return null;
+            }
+            if(entry.matches(group)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static int index(Role role, Phase phase) {
+        return role.ordinal() * PHASES.length + phase.ordinal();
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.hoccer.talk.srp;
+
+import org.bouncycastle.crypto.Digest;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of identity hashes H(I)
+ *
+ * The hash of the identity is part of M1 and the same for
+ * every login of an account. This remembers it for a bounded
+ * number of identities of a single digest algorithm. When the
+ * cache is full an arbitrary entry makes room for a new one.
+ *
+ * This class is thread-safe.
+ *
+ */
+public class SRP6IdentityHashCache {
+
+    final String digestAlgorithm;
+    final int maxEntries;
+
+    final ConcurrentMap<SRP6IdentityKey, byte[]> hashes = new ConcurrentHashMap<SRP6IdentityKey, byte[]>();
+
+    final AtomicLong hits = new AtomicLong();
+    final AtomicLong misses = new AtomicLong();
+
+    public SRP6IdentityHashCache(Digest prototype, int maxEntries) {
+        if(maxEntries < 1) {
+            throw new IllegalArgumentException("Invalid cache size: " + maxEntries);
+        }
+        this.digestAlgorithm = prototype.getAlgorithmName();
+        this.maxEntries = maxEntries;
+    }
+
+    public String getDigestAlgorithm() {
+        return digestAlgorithm;
+    }
+
+    /**
+     * Get H(I), hashing it with the given digest on a miss
+     *
+     * The returned array is shared and must not be modified.
+     */
+    public byte[] get(Digest digest, byte[] identity) {
+        if(!digestAlgorithm.equals(digest.getAlgorithmName())) {
+            throw new IllegalArgumentException("Cache is not for digest " + digest.getAlgorithmName());
+        }
+        SRP6IdentityKey key = new SRP6IdentityKey(identity);
+        byte[] hash = hashes.get(key);
+        if(hash != null) {
+            hits.incrementAndGet();
+            return hash;
+        }
+        misses.incrementAndGet();
+        hash = SRP6Verification.calculateHash(digest, identity);
+        if(hashes.size() >= maxEntries) {
+            Iterator<SRP6IdentityKey> keys = hashes.keySet().iterator();
+            if(keys.hasNext()) {
+                hashes.remove(keys.next());
+            }
+        }
+        hashes.put(key, hash);
+        return hash;
+    }
+
+    /** Number of identities currently cached */
+    public int size() {
+        return hashes.size();
+    }
+
+    /** Number of hashes taken from the cache */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /** Number of hashes calculated */
+    public long getMisses() {
+        return misses.get();
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.hoccer.talk.srp;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Map key for identities
+ *
+ * Wraps a copy of the identity bytes with value equality.
+ *
+ * Identities are chosen by clients, and the maps these keys go
+ * into also remember misses. The hash is therefore seeded randomly
+ * per process, so colliding identities can not be prepared in
+ * advance, and keys are ordered by their unsigned bytes, so that
+ * a {@link java.util.concurrent.ConcurrentHashMap} can still tree
+ * a bin that gets crowded.
+ *
+ */
+final class SRP6IdentityKey implements Comparable<SRP6IdentityKey> {
+
+    private static final long SEED = new SecureRandom().nextLong();
+
+    final byte[] identity;
+    final int hash;
+
+    SRP6IdentityKey(byte[] identity) {
+        this.identity = identity.clone();
+        this.hash = hash(identity);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof SRP6IdentityKey
+                && Arrays.equals(identity, ((SRP6IdentityKey)other).identity);
+    }
+
+    @Override
+    public int compareTo(SRP6IdentityKey other) {
+        byte[] a = identity;
+        byte[] b = other.identity;
+        int length = Math.min(a.length, b.length);
+        for(int i = 0; i < length; i++) {
+            int diff = (a[i] & 0xff) - (b[i] & 0xff);
+            if(diff != 0) {
+                return diff;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private static int hash(byte[] identity) {
+        long h = SEED;
+        for(byte b: identity) {
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        h ^= identity.length;
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+}
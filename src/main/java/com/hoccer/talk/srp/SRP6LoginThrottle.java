@@ -0,0 +1,259 @@
+package com.hoccer.talk.srp;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Login throttle per identity and in total
+ *
+ * Limits login attempts before any group arithmetic is done.
+ * Every identity gets a burst of attempts and then one more per
+ * interval, and an optional global limit caps all attempts
+ * together. Failed logins reported through {@link #reportFailure}
+ * cost extra attempts, so guessing slows down further.
+ *
+ * Limits follow the generic cell rate algorithm: each bucket is
+ * a single theoretical arrival time, updated with compare and set.
+ * Per-identity buckets live in a count-min sketch of fixed size,
+ * {@link #DEPTH} rows of cells indexed by independent hashes of
+ * the identity. An identity is limited by its least loaded cell,
+ * so it is only throttled by others if all of its cells collide
+ * with busier identities. Memory stays bounded whatever the
+ * number of identities.
+ *
+ * Checks run before a handshake is started, ahead of the verifier
+ * lookup, so a rejected attempt costs one hash of the identity and
+ * a few reads. Admission for an identity is decided by a compare
+ * and set on its least loaded cell, after its other cells have been
+ * raised, so concurrent attempts can not pass on the same token.
+ *
+ * The hash is seeded randomly per instance, so colliding identities
+ * can not be prepared in advance.
+ *
+ * This class is thread-safe.
+ *
+ */
+public class SRP6LoginThrottle {
+
+    /** Number of rows in the sketch */
+    public static final int DEPTH = 4;
+
+    /** Default number of attempts charged for a failed login */
+    public static final int DEFAULT_FAILURE_PENALTY = 2;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    final AtomicLongArray cells;
+    final int width;
+    final long seed;
+
+    final long interval;
+    final long tolerance;
+
+    final AtomicLong global = new AtomicLong(EMPTY);
+    volatile long globalInterval;
+    volatile long globalTolerance;
+
+    volatile int failurePenalty = DEFAULT_FAILURE_PENALTY;
+
+    final LongAdder admitted = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LongAdder rejectedGlobal = new LongAdder();
+    final LongAdder failures = new LongAdder();
+
+    /**
+     * Create a throttle without a global limit
+     *
+     * @param cells total number of cells, rounded up to a power of two per row
+     * @param burst number of attempts an identity can make at once
+     * @param interval time after which an identity gets another attempt
+     * @param unit unit of the interval
+     */
+    public SRP6LoginThrottle(int cells, int burst, long interval, TimeUnit unit) {
+        if(cells < DEPTH) {
+            throw new IllegalArgumentException("Invalid number of cells: " + cells);
+        }
+        if(burst < 1) {
+            throw new IllegalArgumentException("Invalid burst: " + burst);
+        }
+        if(interval <= 0) {
+            throw new IllegalArgumentException("Invalid interval: " + interval);
+        }
+        int row = (cells + DEPTH - 1) / DEPTH;
+        this.width = (row == 1) ? 1 : Integer.highestOneBit(row - 1) << 1;
+        this.cells = new AtomicLongArray(DEPTH * width);
+        for(int i = 0; i < this.cells.length(); i++) {
+            this.cells.set(i, EMPTY);
+        }
+        this.seed = new SecureRandom().nextLong();
+        this.interval = unit.toNanos(interval);
+        this.tolerance = (burst - 1) * this.interval;
+    }
+
+    /**
+     * Limit all attempts together
+     *
+     * Allows a burst of attempts and then one per interval,
+     * whatever the identity. An interval of zero removes the
+     * global limit.
+     */
+    public void setGlobalLimit(int burst, long interval, TimeUnit unit) {
+        if(burst < 1 || interval < 0) {
+            throw new IllegalArgumentException("Invalid global limit");
+        }
+        long nanos = unit.toNanos(interval);
+        this.globalTolerance = (burst - 1) * nanos;
+        this.globalInterval = nanos;
+    }
+
+    /** Set the number of attempts charged for a failed login */
+    public void setFailurePenalty(int attempts) {
+        if(attempts < 0) {
+            throw new IllegalArgumentException("Invalid failure penalty: " + attempts);
+        }
+        this.failurePenalty = attempts;
+    }
+
+    /**
+     * Try to start a login for the given identity
+     *
+     * Returns false if the identity or the global limit is
+     * exhausted. Attempts rejected for their identity are not
+     * charged, attempts rejected by the global limit still
+     * count for their identity.
+     */
+    public boolean tryAcquire(byte[] identity) {
+        long now = now();
+        long hash = hash(identity);
+        for(;;) {
+            int row = leastLoadedRow(hash);
+            int index = index(hash, row);
+            long arrival = cells.get(index);
+            if(arrival != EMPTY && arrival - now > tolerance) {
+                rejected.increment();
+                return false;
+            }
+            long next = Math.max(arrival, now) + interval;
+            // raise the other rows first, so a racing check either sees them
+            // raised or loses the compare and set below
+            for(int other = 0; other < DEPTH; other++) {
+                if(other != row) {
+                    raise(index(hash, other), next);
+                }
+            }
+            if(cells.compareAndSet(index, arrival, next)) {
+                break;
+            }
+        }
+        if(!tryAcquireGlobal(now)) {
+            rejectedGlobal.increment();
+            return false;
+        }
+        admitted.increment();
+        return true;
+    }
+
+    /** Charge the failure penalty to the given identity */
+    public void reportFailure(byte[] identity) {
+        failures.increment();
+        int penalty = failurePenalty;
+        if(penalty > 0) {
+            long hash = hash(identity);
+            long arrival = cells.get(index(hash, leastLoadedRow(hash)));
+            long now = now();
+            long next = Math.max(arrival, now) + penalty * interval;
+            for(int row = 0; row < DEPTH; row++) {
+                raise(index(hash, row), next);
+            }
+        }
+    }
+
+    /** Number of attempts admitted */
+    public long getAdmitted() {
+        return admitted.sum();
+    }
+
+    /** Number of attempts rejected by the per-identity limit */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /** Number of attempts rejected by the global limit */
+    public long getRejectedGlobal() {
+        return rejectedGlobal.sum();
+    }
+
+    /** Number of failures reported */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /** Current time in nanoseconds, may be overridden */
+    protected long now() {
+        return System.nanoTime();
+    }
+
+    private boolean tryAcquireGlobal(long now) {
+        long step = globalInterval;
+        if(step == 0) {
+            return true;
+        }
+        long limit = globalTolerance;
+        for(;;) {
+            long arrival = global.get();
+            if(arrival != EMPTY && arrival - now > limit) {
+                return false;
+            }
+            long next = Math.max(arrival, now) + step;
+            if(global.compareAndSet(arrival, next)) {
+                return true;
+            }
+        }
+    }
+
+    /** Row of the least loaded cell of the identity, the first one on ties */
+    private int leastLoadedRow(long hash) {
+        int least = 0;
+        long min = cells.get(index(hash, 0));
+        for(int row = 1; row < DEPTH; row++) {
+            long value = cells.get(index(hash, row));
+            if(value < min) {
+                min = value;
+                least = row;
+            }
+        }
+        return least;
+    }
+
+    /** Raise a cell to at least the given arrival time */
+    private void raise(int index, long arrival) {
+        for(;;) {
+            long current = cells.get(index);
+            if(current >= arrival || cells.compareAndSet(index, current, arrival)) {
+                return;
+            }
+        }
+    }
+
+    private int index(long hash, int row) {
+        // double hashing, the odd step visits distinct cells
+        int h1 = (int)hash;
+        int h2 = (int)(hash >>> 32) | 1;
+        return row * width + ((h1 + row * h2) & (width - 1));
+    }
+
+    private long hash(byte[] identity) {
+        long h = seed;
+        for(byte b: identity) {
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        h ^= identity.length;
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+}
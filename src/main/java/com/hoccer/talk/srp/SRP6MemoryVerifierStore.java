@@ -0,0 +1,39 @@
+package com.hoccer.talk.srp;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory verifier store
+ *
+ * Keeps all records in a concurrent map. Intended for
+ * tests and small deployments without a database.
+ *
+ * This class is thread-safe.
+ *
+ */
+public class SRP6MemoryVerifierStore implements SRP6VerifierStore {
+
+    final ConcurrentMap<SRP6IdentityKey, SRP6VerifierRecord> records =
+            new ConcurrentHashMap<SRP6IdentityKey, SRP6VerifierRecord>();
+
+    @Override
+    public SRP6VerifierRecord lookup(byte[] identity) {
+        return records.get(new SRP6IdentityKey(identity));
+    }
+
+    /** Add or replace the record of an identity */
+    public void put(SRP6VerifierRecord record) {
+        records.put(new SRP6IdentityKey(record.getIdentity()), record);
+    }
+
+    /** Remove the record of an identity */
+    public void remove(byte[] identity) {
+        records.remove(new SRP6IdentityKey(identity));
+    }
+
+    public int size() {
+        return records.size();
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.hoccer.talk.srp;
+
+/**
+ * Listener for handshake instrumentation
+ *
+ * Invoked by {@link SRP6VerifyingServer} and {@link SRP6VerifyingClient}
+ * on the handshake thread after every phase, so implementations
+ * must be thread-safe and cheap. The group identifies the bit
+ * size of N and the digest algorithm.
+ *
+ * Use {@link #NONE} to disable instrumentation.
+ *
+ */
+public interface SRP6Metrics {
+
+    /** Side of the handshake */
+    enum Role {
+        CLIENT,
+        SERVER
+    }
+
+    /** Handshake phases */
+    enum Phase {
+        /** Generating the public value A or B */
+        CREDENTIALS,
+        /** Calculating the premaster secret S */
+        SECRET,
+        /** Calculating the client verifier M1 */
+        M1,
+        /** Calculating the server verifier M2 */
+        M2
+    }
+
+    /** Listener that ignores all events */
+    SRP6Metrics NONE = new SRP6Metrics() {
+        @Override
+        public void phaseCompleted(Role role, Phase phase, SRP6Group group, long nanos) {
+        }
+        @Override
+        public void phaseFailed(Role role, Phase phase, SRP6Group group, String reason) {
+        }
+    };
+
+    /** Called when a phase has completed after the given number of nanoseconds */
+    void phaseCompleted(Role role, Phase phase, SRP6Group group, long nanos);
+
+    /** Called when a phase has failed, with the message of the failure */
+    void phaseFailed(Role role, Phase phase, SRP6Group group, String reason);
+
+}
@@ -0,0 +1,414 @@
+package com.hoccer.talk.srp;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Montgomery arithmetic engine for an SRP group
+ *
+ * Holds the precomputed Montgomery constants for a fixed odd
+ * modulus N and performs modular multiplication on mutable
+ * little-endian limb arrays. Every limb is a {@code long} that
+ * carries a 32 bit digit, which keeps carries in the upper half
+ * of the word and avoids masking on loads.
+ *
+ * Values in Montgomery form are x*R mod N with R = 2^(32*size).
+ *
+ * The engine itself is immutable and thread-safe. All mutable
+ * state lives in a {@link Workspace}, which callers create once
+ * and reuse for any number of operations on a single thread.
+ *
+ */
+public class SRP6Montgomery {
+
+    static final long MASK = 0xFFFFFFFFL;
+
+    /** Largest sliding window used for exponentiation */
+    static final int MAX_WINDOW = 6;
+
+    final BigInteger N;
+
+    /** Number of 32 bit limbs */
+    final int size;
+
+    /** Modulus limbs */
+    final long[] modulus;
+
+    /** -N^-1 mod 2^32 */
+    final long inverse;
+
+    /** R mod N, the Montgomery form of 1 */
+    final long[] one;
+
+    /** R^2 mod N, used for conversion into Montgomery form */
+    final long[] rr;
+
+    public SRP6Montgomery(BigInteger N) {
+        if(N.signum() <= 0 || !N.testBit(0)) {
+            throw new IllegalArgumentException("Modulus must be odd and positive");
+        }
+        this.N = N;
+        this.size = (N.bitLength() + 31) / 32;
+        this.modulus = toLimbs(N, size);
+        BigInteger base = BigInteger.ONE.shiftLeft(32);
+        this.inverse = N.mod(base).modInverse(base).negate().mod(base).longValue();
+        BigInteger R = BigInteger.ONE.shiftLeft(32 * size);
+        this.one = toLimbs(R.mod(N), size);
+        this.rr = toLimbs(R.multiply(R).mod(N), size);
+    }
+
+    public BigInteger getModulus() {
+        return N;
+    }
+
+    /** Number of limbs in an element */
+    public int getSize() {
+        return size;
+    }
+
+    public long[] newElement() {
+        return new long[size];
+    }
+
+    public Workspace newWorkspace() {
+        return new Workspace(this);
+    }
+
+    /** Set out to the Montgomery form of 1 */
+    public void setOne(long[] out) {
+        System.arraycopy(one, 0, out, 0, size);
+    }
+
+    /** Convert x mod N into Montgomery form */
+    public void toMontgomery(BigInteger x, long[] out, Workspace ws) {
+        if(x.signum() < 0 || x.compareTo(N) >= 0) {
+            x = x.mod(N);
+        }
+        load(x, out);
+        multiply(out, rr, out, ws);
+    }
+
+    /** Convert a Montgomery form element back into an integer */
+    public BigInteger fromMontgomery(long[] x, Workspace ws) {
+        long[] plain = ws.plain;
+        Arrays.fill(plain, 0);
+        plain[0] = 1;
+        multiply(x, plain, plain, ws);
+        return toBigInteger(plain);
+    }
+
+    /**
+     * Montgomery multiplication, out = a*b*R^-1 mod N
+     *
+     * Uses coarsely integrated operand scanning. The output
+     * may alias either of the inputs.
+     */
+    public void multiply(long[] a, long[] b, long[] out, Workspace ws) {
+        final int size = this.size;
+        final long[] n = this.modulus;
+        final long[] t = ws.t;
+        Arrays.fill(t, 0);
+        for(int i = 0; i < size; i++) {
+            // t += a * b[i]
+            long bi = b[i];
+            long carry = 0;
+            for(int j = 0; j < size; j++) {
+                long cs = t[j] + a[j] * bi + carry;
+                t[j] = cs & MASK;
+                carry = cs >>> 32;
+            }
+            long cs = t[size] + carry;
+            t[size] = cs & MASK;
+            t[size + 1] = cs >>> 32;
+            // t = (t + m * N) / 2^32
+            long m = (t[0] * inverse) & MASK;
+            cs = t[0] + m * n[0];
+            carry = cs >>> 32;
+            for(int j = 1; j < size; j++) {
+                cs = t[j] + m * n[j] + carry;
+                t[j - 1] = cs & MASK;
+                carry = cs >>> 32;
+            }
+            cs = t[size] + carry;
+            t[size - 1] = cs & MASK;
+            t[size] = t[size + 1] + (cs >>> 32);
+        }
+        reduce(t, 0, out);
+    }
+
+    /**
+     * Montgomery squaring, out = a*a*R^-1 mod N
+     *
+     * Computes every cross product only once, doubles them
+     * with a single shift and then reduces the full square,
+     * which takes about a quarter fewer multiplications than
+     * {@link #multiply}. The output may alias the input.
+     */
+    public void square(long[] a, long[] out, Workspace ws) {
+        final int size = this.size;
+        final long[] n = this.modulus;
+        final long[] w = ws.wide;
+        Arrays.fill(w, 0);
+        // cross products a[i] * a[j] for i < j
+        for(int i = 0; i < size - 1; i++) {
+            long ai = a[i];
+            long carry = 0;
+            for(int j = i + 1; j < size; j++) {
+                long cs = w[i + j] + ai * a[j] + carry;
+                w[i + j] = cs & MASK;
+                carry = cs >>> 32;
+            }
+            w[i + size] = carry;
+        }
+        // double them
+        long high = 0;
+        for(int k = 0; k < 2 * size; k++) {
+            long x = w[k];
+            w[k] = ((x << 1) | high) & MASK;
+            high = x >>> 31;
+        }
+        // add the squares a[i] * a[i]
+        long carry = 0;
+        for(int i = 0; i < size; i++) {
+            long sq = a[i] * a[i];
+            long cs = w[2 * i] + (sq & MASK) + carry;
+            w[2 * i] = cs & MASK;
+            cs = w[2 * i + 1] + (sq >>> 32) + (cs >>> 32);
+            w[2 * i + 1] = cs & MASK;
+            carry = cs >>> 32;
+        }
+        // reduce, carrying past each row into the next one
+        long top = 0;
+        for(int i = 0; i < size; i++) {
+            long m = (w[i] * inverse) & MASK;
+            carry = 0;
+            for(int j = 0; j < size; j++) {
+                long cs = w[i + j] + m * n[j] + carry;
+                w[i + j] = cs & MASK;
+                carry = cs >>> 32;
+            }
+            long cs = w[i + size] + carry + top;
+            w[i + size] = cs & MASK;
+            top = cs >>> 32;
+        }
+        w[2 * size] = top;
+        reduce(w, size, out);
+    }
+
+    /** Modular addition, out = a + b mod N */
+    public void add(long[] a, long[] b, long[] out, Workspace ws) {
+        final long[] t = ws.t;
+        long carry = 0;
+        for(int j = 0; j < size; j++) {
+            long cs = a[j] + b[j] + carry;
+            t[j] = cs & MASK;
+            carry = cs >>> 32;
+        }
+        t[size] = carry;
+        reduce(t, 0, out);
+    }
+
+    /** Modular subtraction, out = a - b mod N */
+    public void subtract(long[] a, long[] b, long[] out) {
+        long borrow = 0;
+        for(int j = 0; j < size; j++) {
+            long d = a[j] - b[j] - borrow;
+            out[j] = d & MASK;
+            borrow = (d >>> 63);
+        }
+        if(borrow != 0) {
+            long carry = 0;
+            for(int j = 0; j < size; j++) {
+                long cs = out[j] + modulus[j] + carry;
+                out[j] = cs & MASK;
+                carry = cs >>> 32;
+            }
+        }
+    }
+
+    /** Copy t[off..off+size] (below 2N) to out, subtracting N if needed */
+    private void reduce(long[] t, int off, long[] out) {
+        if(t[off + size] == 0 && lessThanModulus(t, off)) {
+            System.arraycopy(t, off, out, 0, size);
+            return;
+        }
+        long borrow = 0;
+        for(int j = 0; j < size; j++) {
+            long d = t[off + j] - modulus[j] - borrow;
+            out[j] = d & MASK;
+            borrow = (d >>> 63);
+        }
+    }
+
+    private boolean lessThanModulus(long[] t, int off) {
+        for(int j = size - 1; j >= 0; j--) {
+            if(t[off + j] != modulus[j]) {
+                return t[off + j] < modulus[j];
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Montgomery exponentiation, out = base^exponent in Montgomery form
+     *
+     * The base must be in Montgomery form. Uses left-to-right
+     * sliding windows over the exponent. The output may alias
+     * the base. Callers go through {@link SRP6Residue#pow}; the
+     * handshake itself only exponentiates fixed bases.
+     */
+    void pow(long[] base, BigInteger exponent, long[] out, Workspace ws) {
+        if(exponent.signum() < 0) {
+            throw new IllegalArgumentException("Negative exponent");
+        }
+        int bits = exponent.bitLength();
+        if(bits == 0) {
+            setOne(out);
+            return;
+        }
+        int window = windowSize(bits);
+        long[][] table = ws.window();
+        // odd powers base^1, base^3, ... base^(2^window - 1)
+        long[] base2 = ws.base2;
+        System.arraycopy(base, 0, table[0], 0, size);
+        square(table[0], base2, ws);
+        int entries = 1 << (window - 1);
+        for(int k = 1; k < entries; k++) {
+            multiply(table[k - 1], base2, table[k], ws);
+        }
+        long[] acc = ws.acc;
+        boolean started = false;
+        int i = bits - 1;
+        while(i >= 0) {
+            if(!exponent.testBit(i)) {
+                square(acc, acc, ws);
+                i--;
+                continue;
+            }
+            int j = Math.max(i - window + 1, 0);
+            while(!exponent.testBit(j)) {
+                j++;
+            }
+            int value = 0;
+            for(int k = i; k >= j; k--) {
+                value = (value << 1) | (exponent.testBit(k) ? 1 : 0);
+            }
+            if(started) {
+                for(int k = i; k >= j; k--) {
+                    square(acc, acc, ws);
+                }
+                multiply(acc, table[value >>> 1], acc, ws);
+            } else {
+                System.arraycopy(table[value >>> 1], 0, acc, 0, size);
+                started = true;
+            }
+            i = j - 1;
+        }
+        System.arraycopy(acc, 0, out, 0, size);
+    }
+
+    /** Sliding window size for the given exponent length, as used by BigInteger */
+    static int windowSize(int bits) {
+        int window = 1;
+        if(bits > 7) window = 2;
+        if(bits > 25) window = 3;
+        if(bits > 81) window = 4;
+        if(bits > 241) window = 5;
+        if(bits > 673) window = 6;
+        return Math.min(window, MAX_WINDOW);
+    }
+
+    /** Load a non-negative integer below 2^(32*size) into limbs */
+    void load(BigInteger x, long[] out) {
+        Arrays.fill(out, 0, size, 0);
+        byte[] bytes = x.toByteArray();
+        int limb = 0;
+        int shift = 0;
+        for(int k = bytes.length - 1; k >= 0 && limb < size; k--) {
+            out[limb] |= (bytes[k] & 0xFFL) << shift;
+            shift += 8;
+            if(shift == 32) {
+                shift = 0;
+                limb++;
+            }
+        }
+    }
+
+    /** Convert plain limbs into an integer */
+    BigInteger toBigInteger(long[] x) {
+        byte[] bytes = new byte[size * 4];
+        for(int j = 0; j < size; j++) {
+            long limb = x[j];
+            int k = bytes.length - 4 * j - 1;
+            bytes[k] = (byte)limb;
+            bytes[k - 1] = (byte)(limb >>> 8);
+            bytes[k - 2] = (byte)(limb >>> 16);
+            bytes[k - 3] = (byte)(limb >>> 24);
+        }
+        return new BigInteger(1, bytes);
+    }
+
+    static long[] toLimbs(BigInteger x, int size) {
+        long[] limbs = new long[size];
+        for(int j = 0; j < size; j++) {
+            limbs[j] = x.shiftRight(32 * j).intValue() & MASK;
+        }
+        return limbs;
+    }
+
+    /**
+     * Mutable scratch space for a Montgomery engine
+     *
+     * Not thread-safe. Create one per thread or per handshake.
+     */
+    public static class Workspace {
+
+        final SRP6Montgomery engine;
+
+        final long[] t;
+        final long[] wide;
+        final long[] plain;
+        final long[] acc;
+        final long[] base2;
+
+        /** Sliding window powers, allocated on first exponentiation */
+        long[][] window;
+
+        Workspace(SRP6Montgomery engine) {
+            int size = engine.size;
+            this.engine = engine;
+            this.t = new long[size + 2];
+            this.wide = new long[2 * size + 1];
+            this.plain = new long[size];
+            this.acc = new long[size];
+            this.base2 = new long[size];
+        }
+
+        long[][] window() {
+            if(window == null) {
+                window = new long[1 << (MAX_WINDOW - 1)][engine.size];
+            }
+            return window;
+        }
+
+        public SRP6Montgomery getEngine() {
+            return engine;
+        }
+
+        /** Zero all intermediate values */
+        public void clear() {
+            Arrays.fill(t, 0);
+            Arrays.fill(wide, 0);
+            Arrays.fill(plain, 0);
+            Arrays.fill(acc, 0);
+            Arrays.fill(base2, 0);
+            if(window != null) {
+                for(long[] entry: window) {
+                    Arrays.fill(entry, 0);
+                }
+            }
+        }
+
+    }
+
+}
@@ -1,6 +1,11 @@
 package com.hoccer.talk.srp;
 
+import org.bouncycastle.crypto.Digest;
+
 import java.math.BigInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
 
 public class SRP6Parameters {
 
@@ -87,9 +92,57 @@ public class SRP6Parameters {
             "13"
     );
 
+    private static final SRP6Parameters[] STANDARD = {
+            CONSTANTS_1024, CONSTANTS_2048, CONSTANTS_4096, CONSTANTS_8192
+    };
+
+    /**
+     * Find the standard parameter set for the given group
+     *
+     * Returns null if the group is not one of the standard groups.
+     */
+    public static SRP6Parameters forGroup(BigInteger N, BigInteger g) {
+        for(SRP6Parameters params: STANDARD) {
+            if(params.N.equals(N) && params.g.equals(g)) {
+                return params;
+            }
+        }
+        return null;
+    }
+
+    /** Get a standard parameter set by its index, or null */
+    static SRP6Parameters forStandardIndex(int index) {
+        if(index < 0 || index >= STANDARD.length) {
+            return null;
+        }
+        return STANDARD[index];
+    }
+
+    /** Get the index of this parameter set among the standard groups, or -1 */
+    int getStandardIndex() {
+        for(int i = 0; i < STANDARD.length; i++) {
+            if(STANDARD[i] == this) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     public final BigInteger N;
     public final BigInteger g;
 
+    /** Montgomery engine for N, built on first use */
+    private volatile SRP6Montgomery montgomery;
+
+    /** Fixed-base table for g, built on first use */
+    private volatile SRP6FixedBaseTable generatorTable;
+
+    /** Pool for parallel exponentiation, null when sequential */
+    private volatile ForkJoinPool parallelPool;
+
+    /** Derived constants per digest algorithm */
+    private final ConcurrentMap<String, SRP6Group> groups = new ConcurrentHashMap<String, SRP6Group>();
+
     public SRP6Parameters(BigInteger N, BigInteger g) {
         this.N = N;
         this.g = g;
@@ -100,4 +153,98 @@ public class SRP6Parameters {
         this.g = new BigInteger(hexg, 16);
     }
 
+    public SRP6Montgomery getMontgomery() {
+        SRP6Montgomery engine = montgomery;
+        if(engine == null) {
+            synchronized (this) {
+                engine = montgomery;
+                if(engine == null) {
+                    engine = new SRP6Montgomery(N);
+                    montgomery = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    public SRP6FixedBaseTable getGeneratorTable() {
+        SRP6FixedBaseTable table = generatorTable;
+        if(table == null) {
+            synchronized (this) {
+                table = generatorTable;
+                if(table == null) {
+                    table = new SRP6FixedBaseTable(getMontgomery(), g);
+                    generatorTable = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Use a table loaded from a snapshot
+     *
+     * Keeps the current table if one has been built already.
+     * Returns the table in use.
+     */
+    synchronized SRP6FixedBaseTable installGeneratorTable(SRP6FixedBaseTable table) {
+        if(generatorTable == null) {
+            generatorTable = table;
+        }
+        return generatorTable;
+    }
+
+    /**
+     * Select parallel exponentiation for handshakes in this group
+     *
+     * With a pool set, the verifying client and server spread
+     * their fixed-base exponentiations over the pool and the
+     * client calculates g^x alongside g^a. This lowers the
+     * latency of a single handshake at the cost of throughput,
+     * which mostly pays off for the 8192 bit group.
+     *
+     * Pass null to return to sequential exponentiation.
+     */
+    public void setParallelPool(ForkJoinPool pool) {
+        this.parallelPool = pool;
+    }
+
+    /** Get the pool for parallel exponentiation, or null */
+    public ForkJoinPool getParallelPool() {
+        return parallelPool;
+    }
+
+    /** Get the shared group constants for the given digest algorithm */
+    public SRP6Group getGroup(Digest digest) {
+        SRP6Group group = groups.get(digest.getAlgorithmName());
+        if(group == null) {
+            group = new SRP6Group(this, digest);
+            SRP6Group existing = groups.putIfAbsent(digest.getAlgorithmName(), group);
+            if(existing != null) {
+                group = existing;
+            }
+        }
+        return group;
+    }
+
+    /** Use group constants loaded from a snapshot, unless already known */
+    SRP6Group installGroup(SRP6Group group) {
+        SRP6Group existing = groups.putIfAbsent(group.getDigestAlgorithm(), group);
+        return (existing != null) ? existing : group;
+    }
+
+    /**
+     * Get H(N) xor H(g) for the given digest algorithm
+     *
+     * The returned array is shared and must not be modified.
+     */
+    public byte[] getH_Ng(Digest digest) {
+        return getGroup(digest).getH_Ng();
+    }
+
+    /** Calculate g^exponent mod N using the generator table */
+    public BigInteger powerOfG(BigInteger exponent) {
+        return getGeneratorTable().pow(exponent);
+    }
+
 }
@@ -0,0 +1,102 @@
+package com.hoccer.talk.srp;
+
+import org.bouncycastle.crypto.CryptoException;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Validation of received public values
+ *
+ * Checks A on the server and B on the client before any
+ * hashing or exponentiation is spent on them. Values in the
+ * range 0 < x < N are recognized with comparisons alone, so
+ * both valid and invalid values cost next to nothing.
+ *
+ * Two policies are available:
+ *
+ *   RFC5054  rejects values with x mod N == 0 and reduces
+ *            larger values, like {@link org.bouncycastle.crypto.agreement.srp.SRP6Util#validatePublicValue}
+ *   STRICT   rejects 0, 1, N - 1 and everything outside [0, N),
+ *            which are never produced by an honest peer
+ *
+ * Rejections are counted and reported with an exception
+ * that carries no stack trace, keeping floods of invalid
+ * values cheap.
+ *
+ * This class is thread-safe.
+ *
+ */
+public class SRP6PublicValueCheck {
+
+    public enum Policy {
+        RFC5054,
+        STRICT
+    }
+
+    /** Shared default check using the RFC 5054 policy */
+    public static final SRP6PublicValueCheck DEFAULT = new SRP6PublicValueCheck(Policy.RFC5054);
+
+    final Policy policy;
+
+    final LongAdder rejected = new LongAdder();
+
+    public SRP6PublicValueCheck(Policy policy) {
+        this.policy = policy;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /** Number of values rejected by this check */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Validate a received public value
+     *
+     * Returns the value reduced mod N.
+     */
+    public BigInteger validate(SRP6Group group, BigInteger value) throws CryptoException {
+        BigInteger N = group.getN();
+        if(value.signum() > 0 && value.compareTo(N) < 0) {
+            if(policy == Policy.STRICT
+                    && (value.equals(BigInteger.ONE) || value.compareTo(group.upper) == 0)) {
+                throw reject("Invalid public value: degenerate");
+            }
+            return value;
+        }
+        if(policy == Policy.STRICT) {
+            throw reject("Invalid public value: out of range");
+        }
+        BigInteger reduced = value.mod(N);
+        if(reduced.signum() == 0) {
+            throw reject("Invalid public value: 0");
+        }
+        return reduced;
+    }
+
+    private CryptoException reject(String reason) {
+        rejected.increment();
+        return new RejectedValueException(reason);
+    }
+
+    /** Rejection without a stack trace */
+    static class RejectedValueException extends CryptoException {
+
+        private static final long serialVersionUID = 1L;
+
+        RejectedValueException(String message) {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+
+    }
+
+}
@@ -0,0 +1,263 @@
+package com.hoccer.talk.srp;
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.prng.SP800SecureRandom;
+import org.bouncycastle.crypto.prng.SP800SecureRandomBuilder;
+import org.bouncycastle.util.Pack;
+
+import java.security.SecureRandom;
+import java.security.SecureRandomSpi;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-thread random source for ephemeral keys
+ *
+ * A single SecureRandom shared by all handshakes serializes
+ * them on its lock. This source gives every thread its own
+ * SP 800-90A hash DRBG (SHA-256), instantiated from the system
+ * source and reseeded from it once a thread has drawn a given
+ * number of bytes or a given time has passed, whichever comes
+ * first. The system source is only touched on instantiation
+ * and reseeding.
+ *
+ * {@link #getSecureRandom()} returns a facade that routes each
+ * call to the generator of the calling thread, so a handshake
+ * may move between threads. The verifying server and client
+ * use the default source when they are given no SecureRandom.
+ *
+ * This class is thread-safe.
+ *
+ */
+public class SRP6RandomSource {
+
+    /** Default number of bytes a thread draws between reseeds */
+    public static final long DEFAULT_RESEED_BYTES = 1L << 20;
+
+    /** Default time after which a thread reseeds */
+    public static final long DEFAULT_RESEED_MINUTES = 10;
+
+    private static volatile SRP6RandomSource defaultSource;
+
+    final SecureRandom entropy;
+    final long reseedBytes;
+    final long reseedNanos;
+
+    final ThreadLocal<Generator> generators;
+    final SecureRandom facade;
+
+    final AtomicLong instantiated = new AtomicLong();
+    final LongAdder reseeds = new LongAdder();
+    final LongAdder bytesDrawn = new LongAdder();
+
+    /** Create a source with the default reseed policy, seeded from the system */
+    public SRP6RandomSource() {
+        this(new SecureRandom(), DEFAULT_RESEED_BYTES, DEFAULT_RESEED_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Create a source with the given entropy and reseed policy
+     *
+     * The entropy source is shared by all threads and should
+     * be backed by the system, like a default SecureRandom.
+     */
+    public SRP6RandomSource(SecureRandom entropy, long reseedBytes, long reseedInterval, TimeUnit unit) {
+        if(reseedBytes < 1 || reseedInterval < 1) {
+            throw new IllegalArgumentException("Invalid reseed policy: " + reseedBytes + " bytes, " + reseedInterval + " " + unit);
+        }
+        this.entropy = entropy;
+        this.reseedBytes = reseedBytes;
+        this.reseedNanos = unit.toNanos(reseedInterval);
+        this.generators = new ThreadLocal<Generator>() {
+            @Override
+            protected Generator initialValue() {
+                return new Generator(instantiate());
+            }
+        };
+        this.facade = new Facade(this);
+    }
+
+    /** Get the shared default source */
+    public static SRP6RandomSource getDefault() {
+        SRP6RandomSource source = defaultSource;
+        if(source == null) {
+            synchronized (SRP6RandomSource.class) {
+                source = defaultSource;
+                if(source == null) {
+                    source = new SRP6RandomSource();
+                    defaultSource = source;
+                }
+            }
+        }
+        return source;
+    }
+
+    /** Returns the given random, or the default source if it is null */
+    static SecureRandom orDefault(SecureRandom random) {
+        return (random != null) ? random : getDefault().getSecureRandom();
+    }
+
+    /**
+     * Get a SecureRandom drawing from this source
+     *
+     * The returned instance is shared and may be used by
+     * any number of threads without contention.
+     */
+    public SecureRandom getSecureRandom() {
+        return facade;
+    }
+
+    /** Reseed the generator of the calling thread now */
+    public void reseed() {
+        generators.get().reseed();
+    }
+
+    /** Number of generators instantiated, one per thread */
+    public long getInstantiations() {
+        return instantiated.get();
+    }
+
+    /** Number of reseeds over all threads */
+    public long getReseeds() {
+        return reseeds.sum();
+    }
+
+    /** Number of random bytes drawn over all threads */
+    public long getBytesDrawn() {
+        return bytesDrawn.sum();
+    }
+
+    void nextBytes(byte[] bytes) {
+        generators.get().nextBytes(bytes);
+    }
+
+    void setSeed(byte[] seed) {
+        generators.get().drbg.setSeed(seed);
+    }
+
+    byte[] generateSeed(int length) {
+        return entropy.generateSeed(length);
+    }
+
+    private SP800SecureRandom instantiate() {
+        // the counter keeps generators distinct even on a weak system source
+        long index = instantiated.incrementAndGet();
+        byte[] personalization = new byte[16];
+        Pack.longToBigEndian(index, personalization, 0);
+        Pack.longToBigEndian(Thread.currentThread().getId(), personalization, 8);
+        byte[] nonce = new byte[16];
+        entropy.nextBytes(nonce);
+        return new SP800SecureRandomBuilder(entropy, false)
+                .setPersonalizationString(personalization)
+                .buildHash(new SHA256Digest(), nonce, false);
+    }
+
+    /** DRBG of a single thread together with its reseed state */
+    private class Generator {
+
+        final SP800SecureRandom drbg;
+
+        long drawn;
+        long reseededAt;
+
+        Generator(SP800SecureRandom drbg) {
+            this.drbg = drbg;
+            this.reseededAt = System.nanoTime();
+        }
+
+        void nextBytes(byte[] bytes) {
+            if(drawn >= reseedBytes || System.nanoTime() - reseededAt >= reseedNanos) {
+                reseed();
+            }
+            drbg.nextBytes(bytes);
+            drawn += bytes.length;
+            bytesDrawn.add(bytes.length);
+        }
+
+        void reseed() {
+            drbg.reseed((byte[])null);
+            drawn = 0;
+            reseededAt = System.nanoTime();
+            reseeds.increment();
+        }
+
+    }
+
+    /**
+     * Shared SecureRandom routing to the per-thread generators
+     *
+     * Overrides the methods that SecureRandom synchronizes on
+     * older runtimes, everything else goes through the SPI.
+     */
+    private static class Facade extends SecureRandom {
+
+        private static final long serialVersionUID = 1L;
+
+        final SRP6RandomSource source;
+
+        Facade(SRP6RandomSource source) {
+            super(new Spi(source), null);
+            this.source = source;
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return "SHA256-HashDRBG";
+        }
+
+        @Override
+        public void nextBytes(byte[] bytes) {
+            source.nextBytes(bytes);
+        }
+
+        @Override
+        public void setSeed(byte[] seed) {
+            source.setSeed(seed);
+        }
+
+        @Override
+        public void setSeed(long seed) {
+            // called by the Random constructor before the source is set
+            if(source != null) {
+                byte[] bytes = new byte[8];
+                Pack.longToBigEndian(seed, bytes, 0);
+                source.setSeed(bytes);
+            }
+        }
+
+        @Override
+        public byte[] generateSeed(int length) {
+            return source.generateSeed(length);
+        }
+
+    }
+
+    private static class Spi extends SecureRandomSpi {
+
+        private static final long serialVersionUID = 1L;
+
+        final SRP6RandomSource source;
+
+        Spi(SRP6RandomSource source) {
+            this.source = source;
+        }
+
+        @Override
+        protected void engineSetSeed(byte[] seed) {
+            source.setSeed(seed);
+        }
+
+        @Override
+        protected void engineNextBytes(byte[] bytes) {
+            source.nextBytes(bytes);
+        }
+
+        @Override
+        protected byte[] engineGenerateSeed(int length) {
+            return source.generateSeed(length);
+        }
+
+    }
+
+}
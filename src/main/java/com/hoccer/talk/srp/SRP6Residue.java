@@ -0,0 +1,138 @@
+package com.hoccer.talk.srp;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Mutable fixed-width residue mod N
+ *
+ * Holds a value in Montgomery form as a fixed number of limbs
+ * of its {@link SRP6Montgomery} engine, so the width is fixed
+ * per group. All arithmetic happens in place and returns this
+ * residue for chaining, letting a handshake reuse the same few
+ * residues instead of creating a new BigInteger for every
+ * intermediate result.
+ *
+ * Conversion from and to BigInteger is only needed where
+ * values cross the public API.
+ *
+ * Not thread-safe. Operands must belong to the same engine.
+ *
+ */
+public final class SRP6Residue {
+
+    final SRP6Montgomery engine;
+    final long[] limbs;
+
+    public SRP6Residue(SRP6Montgomery engine) {
+        this.engine = engine;
+        this.limbs = engine.newElement();
+    }
+
+    public SRP6Montgomery getEngine() {
+        return engine;
+    }
+
+    /** Set this residue to x mod N */
+    public SRP6Residue set(BigInteger x, SRP6Montgomery.Workspace ws) {
+        engine.toMontgomery(x, limbs, ws);
+        return this;
+    }
+
+    /**
+     * Set this residue to x * factor * R^-1 mod N
+     *
+     * Takes x as it is instead of converting it first, so with
+     * a factor of y*R in Montgomery form this is the Montgomery
+     * form of x*y at the cost of a single multiplication.
+     */
+    SRP6Residue setScaled(BigInteger x, SRP6Residue factor, SRP6Montgomery.Workspace ws) {
+        check(factor);
+        if(x.signum() < 0 || x.compareTo(engine.N) >= 0) {
+            x = x.mod(engine.N);
+        }
+        engine.load(x, limbs);
+        engine.multiply(limbs, factor.limbs, limbs, ws);
+        return this;
+    }
+
+    public SRP6Residue set(SRP6Residue other) {
+        check(other);
+        System.arraycopy(other.limbs, 0, limbs, 0, limbs.length);
+        return this;
+    }
+
+    public SRP6Residue setOne() {
+        engine.setOne(limbs);
+        return this;
+    }
+
+    /** Set this residue to base^exponent using a fixed-base table of the same engine */
+    public SRP6Residue setPower(SRP6FixedBaseTable table, BigInteger exponent, SRP6Montgomery.Workspace ws) {
+        if(table.getEngine() != engine) {
+            throw new IllegalArgumentException("Table belongs to a different group");
+        }
+        table.powMontgomery(exponent, limbs, ws);
+        return this;
+    }
+
+    /**
+     * Set this residue to base^exponent, spreading the comb over a pool
+     *
+     * Uses the sequential method if the pool is null.
+     */
+    public SRP6Residue setPower(SRP6FixedBaseTable table, BigInteger exponent,
+                                SRP6Montgomery.Workspace ws, ForkJoinPool pool) {
+        if(table.getEngine() != engine) {
+            throw new IllegalArgumentException("Table belongs to a different group");
+        }
+        table.powMontgomery(exponent, limbs, ws, pool);
+        return this;
+    }
+
+    public SRP6Residue multiply(SRP6Residue other, SRP6Montgomery.Workspace ws) {
+        check(other);
+        engine.multiply(limbs, other.limbs, limbs, ws);
+        return this;
+    }
+
+    public SRP6Residue square(SRP6Montgomery.Workspace ws) {
+        engine.square(limbs, limbs, ws);
+        return this;
+    }
+
+    public SRP6Residue add(SRP6Residue other, SRP6Montgomery.Workspace ws) {
+        check(other);
+        engine.add(limbs, other.limbs, limbs, ws);
+        return this;
+    }
+
+    public SRP6Residue subtract(SRP6Residue other) {
+        check(other);
+        engine.subtract(limbs, other.limbs, limbs);
+        return this;
+    }
+
+    public SRP6Residue pow(BigInteger exponent, SRP6Montgomery.Workspace ws) {
+        engine.pow(limbs, exponent, limbs, ws);
+        return this;
+    }
+
+    /** Convert the value of this residue into an integer */
+    public BigInteger toBigInteger(SRP6Montgomery.Workspace ws) {
+        return engine.fromMontgomery(limbs, ws);
+    }
+
+    /** Zero the limbs */
+    public void clear() {
+        Arrays.fill(limbs, 0);
+    }
+
+    private void check(SRP6Residue other) {
+        if(other.engine != engine) {
+            throw new IllegalArgumentException("Residue belongs to a different group");
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.hoccer.talk.srp;
+
+import org.bouncycastle.crypto.Digest;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Batch processing of the first server step
+ *
+ * After a restart many clients start their handshakes at the
+ * same time. This generates the server credentials for a batch
+ * of servers of a single group in two stages: first the private
+ * values of all servers are selected, taking precomputed pairs
+ * from their ephemeral pools where available, then B = k*v + g^b
+ * is calculated for each of them. Results are returned in the
+ * order of the servers.
+ *
+ * The second stage is split into chunks over a fork-join pool
+ * and the calling thread, one whole exponentiation per server,
+ * which avoids splitting and joining every single exponentiation
+ * as the parallel mode of {@link SRP6Parameters} does. There is
+ * no sequential mode: exponents are independent, so a batch run
+ * on one thread would cost the same as completing the servers
+ * one by one.
+ *
+ * The batch shares the group table and k in Montgomery form.
+ * Every thread that works on a batch keeps its own workspace and
+ * residues for the lifetime of the batch, so repeated batches do
+ * not allocate any per-server or per-chunk scratch space. They are
+ * wiped after every chunk, as they hold k*v and g^b.
+ *
+ * Each server reports an equal share of the batch time as its
+ * credentials phase.
+ *
+ * This class is thread-safe. The servers of a batch must not be
+ * used by other threads while the batch is processed.
+ *
+ */
+public class SRP6ServerBatch {
+
+    /** Scratch space of one worker thread */
+    static class Scratch {
+
+        final SRP6Montgomery.Workspace ws;
+        final SRP6Residue kv;
+        final SRP6Residue power;
+
+        Scratch(SRP6Montgomery engine) {
+            this.ws = engine.newWorkspace();
+            this.kv = new SRP6Residue(engine);
+            this.power = new SRP6Residue(engine);
+        }
+
+        void clear() {
+            kv.clear();
+            power.clear();
+            ws.clear();
+        }
+
+    }
+
+    final SRP6Group group;
+    final ForkJoinPool pool;
+
+    final ThreadLocal<Scratch> scratches = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch(group.getParameters().getMontgomery());
+        }
+    };
+
+    public SRP6ServerBatch(SRP6Group group, ForkJoinPool pool) {
+        if(pool == null) {
+            throw new IllegalArgumentException("Batches require a pool");
+        }
+        this.group = group;
+        this.pool = pool;
+    }
+
+    public SRP6ServerBatch(SRP6Parameters params, Digest digest, ForkJoinPool pool) {
+        this(params.getGroup(digest), pool);
+    }
+
+    public SRP6Group getGroup() {
+        return group;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public BigInteger[] generateServerCredentials(List<? extends SRP6VerifyingServer> servers) {
+        return generateServerCredentials(servers.toArray(new SRP6VerifyingServer[servers.size()]));
+    }
+
+    /**
+     * Generate the credentials of all given servers
+     *
+     * All servers must be initialized for the group of this
+     * batch. Returns B of every server in the same order.
+     */
+    public BigInteger[] generateServerCredentials(final SRP6VerifyingServer... servers) {
+        for(SRP6VerifyingServer server: servers) {
+            if(server.params != group.getParameters() || !group.getDigestAlgorithm().equals(server.group.getDigestAlgorithm())) {
+                throw new IllegalArgumentException("Server is not initialized for the batch group");
+            }
+        }
+        long start = System.nanoTime();
+        final int count = servers.length;
+        final SRP6EphemeralPool.Ephemeral[] pairs = new SRP6EphemeralPool.Ephemeral[count];
+        for(int i = 0; i < count; i++) {
+            pairs[i] = servers[i].selectEphemeral();
+        }
+
+        final BigInteger[] results = new BigInteger[count];
+        int chunks = Math.min(count, pool.getParallelism() + 1);
+        List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(chunks);
+        for(int c = 1; c < chunks; c++) {
+            final int from = count * c / chunks;
+            final int to = count * (c + 1) / chunks;
+            tasks.add(pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    complete(servers, pairs, results, from, to);
+                }
+            }));
+        }
+        complete(servers, pairs, results, 0, count / Math.max(1, chunks));
+        for(ForkJoinTask<?> task: tasks) {
+            task.join();
+        }
+
+        long share = (count > 0) ? (System.nanoTime() - start) / count : 0;
+        for(SRP6VerifyingServer server: servers) {
+            server.metrics.phaseCompleted(SRP6Metrics.Role.SERVER, SRP6Metrics.Phase.CREDENTIALS, group, share);
+        }
+        return results;
+    }
+
+    /** Calculate B for a range of servers with the scratch space of this thread */
+    private void complete(SRP6VerifyingServer[] servers, SRP6EphemeralPool.Ephemeral[] pairs,
+                          BigInteger[] results, int from, int to) {
+        Scratch scratch = scratches.get();
+        try {
+            for(int i = from; i < to; i++) {
+                results[i] = servers[i].completeCredentials(pairs[i], scratch.kv, scratch.power, scratch.ws, null);
+                pairs[i] = null;
+            }
+        } finally {
+            scratch.clear();
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.hoccer.talk.srp;
+
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.util.Memoable;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bounded pool of reusable server handshakes
+ *
+ * Recycles {@link SRP6VerifyingServer} instances together with
+ * their digest, Montgomery workspace and verifier buffers. All
+ * pooled servers are bound to the same group.
+ *
+ * Servers are obtained with {@link #acquire} and must be handed
+ * back exactly once through {@link #release} when the handshake
+ * has finished or failed. Released servers are reset, which
+ * zeroes their secret state. Verifiers returned to callers
+ * are copies and stay valid.
+ * If the pool is full released servers are simply dropped.
+ *
+ * This class is thread-safe.
+ *
+ */
+public class SRP6ServerPool {
+
+    final SRP6Group group;
+    final Digest prototype;
+    final SecureRandom random;
+
+    final BlockingQueue<SRP6VerifyingServer> idle;
+
+    volatile SRP6EphemeralPool ephemerals;
+    volatile SRP6Metrics metrics = SRP6Metrics.NONE;
+    volatile SRP6PublicValueCheck check = SRP6PublicValueCheck.DEFAULT;
+    volatile SRP6IdentityHashCache identityHashes;
+    volatile SRP6LoginThrottle throttle;
+
+    /**
+     * Create a pool for the given group
+     *
+     * The prototype digest must implement {@link Memoable}
+     * and is copied for every new server. A null random
+     * selects {@link SRP6RandomSource#getDefault()}.
+     */
+    public SRP6ServerPool(SRP6Parameters params, Digest prototype, SecureRandom random, int capacity) {
+        if(!(prototype instanceof Memoable)) {
+            throw new IllegalArgumentException("Digest " + prototype.getAlgorithmName() + " can not be copied");
+        }
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Invalid pool capacity: " + capacity);
+        }
+        this.group = params.getGroup(prototype);
+        this.prototype = prototype;
+        this.random = random;
+        this.idle = new ArrayBlockingQueue<SRP6VerifyingServer>(capacity);
+    }
+
+    public SRP6Group getGroup() {
+        return group;
+    }
+
+    /** Let servers from this pool draw precomputed ephemerals */
+    public void setEphemeralPool(SRP6EphemeralPool ephemerals) {
+        this.ephemerals = ephemerals;
+    }
+
+    /** Report handshake phases of servers from this pool */
+    public void setMetrics(SRP6Metrics metrics) {
+        this.metrics = (metrics != null) ? metrics : SRP6Metrics.NONE;
+    }
+
+    /** Validate client values of servers from this pool with the given check */
+    public void setPublicValueCheck(SRP6PublicValueCheck check) {
+        this.check = (check != null) ? check : SRP6PublicValueCheck.DEFAULT;
+    }
+
+    /** Let servers from this pool take H(I) from the given cache */
+    public void setIdentityHashCache(SRP6IdentityHashCache identityHashes) {
+        this.identityHashes = identityHashes;
+    }
+
+    /**
+     * Report failed logins of servers from this pool to the given throttle
+     *
+     * Callers still check {@link SRP6LoginThrottle#tryAcquire}
+     * before looking up the account and acquiring a server.
+     */
+    public void setLoginThrottle(SRP6LoginThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    /** Number of idle servers currently held */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /** Get a server initialized for the given account */
+    public SRP6VerifyingServer acquire(BigInteger v, byte[] identifier, byte[] salt) {
+        SRP6VerifyingServer server = idle.poll();
+        Digest digest;
+        if(server == null) {
+            server = newServer();
+            digest = newDigest();
+        } else {
+            digest = server.getDigest();
+        }
+        server.initVerifiable(group, v, identifier, salt, digest, random);
+        server.setEphemeralPool(ephemerals);
+        server.setMetrics(metrics);
+        server.setPublicValueCheck(check);
+        server.setIdentityHashCache(identityHashes);
+        server.setLoginThrottle(throttle);
+        return server;
+    }
+
+    /**
+     * Get a server initialized for the given account credentials
+     *
+     * The record must belong to the group of this pool. The
+     * server uses the digest prefix cached with the record.
+     */
+    public SRP6VerifyingServer acquire(SRP6VerifierRecord record) {
+        if(record.getParameters() != group.getParameters()) {
+            throw new IllegalArgumentException("Record belongs to a different group");
+        }
+        SRP6VerifyingServer server = acquire(record.getVerifier(), record.getIdentity(), record.getSalt());
+        server.setDigestPrefix(record.getDigestPrefix(group, server.getDigest()));
+        return server;
+    }
+
+    /** Return a server to the pool, wiping its handshake state */
+    public void release(SRP6VerifyingServer server) {
+        server.reset();
+        idle.offer(server);
+    }
+
+    /** Create a new server instance, may be overridden */
+    protected SRP6VerifyingServer newServer() {
+        return new SRP6VerifyingServer();
+    }
+
+    /** Create a new digest from the prototype */
+    protected Digest newDigest() {
+        Digest digest = (Digest)((Memoable)prototype).copy();
+        digest.reset();
+        return digest;
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.hoccer.talk.srp;
+
+import org.bouncycastle.crypto.CryptoException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * Pending server handshake state
+ *
+ * Captures everything a {@link SRP6VerifyingServer} needs to
+ * complete a handshake after it has sent B, so that step two
+ * can be handled by another instance or another node.
+ *
+ * The binary encoding is versioned and compact:
+ *
+ *   byte    version
+ *   byte    standard group index
+ *   byte[]  digest algorithm name (8 bit length prefix)
+ *   long    creation time in milliseconds
+ *   byte[]  identity, salt, v, b, B (16 bit length prefix each)
+ *
+ * The encoding contains the private value b in clear and must
+ * only leave the process sealed, see {@link SRP6StateSealer}.
+ *
+ */
+public class SRP6ServerState {
+
+    public static final int VERSION = 1;
+
+    final SRP6Parameters params;
+    final String digestAlgorithm;
+    final long created;
+
+    final byte[] identifier;
+    final byte[] salt;
+
+    final BigInteger v;
+    final BigInteger b;
+    final BigInteger B;
+
+    public SRP6ServerState(
+            SRP6Parameters params, String digestAlgorithm, long created,
+            byte[] identifier, byte[] salt,
+            BigInteger v, BigInteger b, BigInteger B) {
+        this.params = params;
+        this.digestAlgorithm = digestAlgorithm;
+        this.created = created;
+        this.identifier = identifier;
+        this.salt = salt;
+        this.v = v;
+        this.b = b;
+        this.B = B;
+    }
+
+    public SRP6Parameters getParameters() {
+        return params;
+    }
+
+    public String getDigestAlgorithm() {
+        return digestAlgorithm;
+    }
+
+    /** Creation time in milliseconds since the epoch */
+    public long getCreated() {
+        return created;
+    }
+
+    public byte[] getIdentifier() {
+        return identifier;
+    }
+
+    public byte[] getSalt() {
+        return salt;
+    }
+
+    public BigInteger getVerifier() {
+        return v;
+    }
+
+    public BigInteger getPrivateValue() {
+        return b;
+    }
+
+    public BigInteger getPublicValue() {
+        return B;
+    }
+
+    /** Encode this state, only standard groups are supported */
+    public byte[] encode() {
+        int index = params.getStandardIndex();
+        if(index < 0) {
+            throw new IllegalArgumentException("Only standard groups can be encoded");
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 3 * params.N.bitLength() / 8);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            out.writeByte(index);
+            byte[] algorithm = digestAlgorithm.getBytes("US-ASCII");
+            out.writeByte(algorithm.length);
+            out.write(algorithm);
+            out.writeLong(created);
+            writeField(out, identifier);
+            writeField(out, salt);
+            writeField(out, v.toByteArray());
+            writeField(out, b.toByteArray());
+            writeField(out, B.toByteArray());
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode server state", e);
+        }
+    }
+
+    /** Decode a state produced by {@link #encode()} */
+    public static SRP6ServerState decode(byte[] data) throws CryptoException {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            int version = in.readUnsignedByte();
+            if(version != VERSION) {
+                throw new CryptoException("Unsupported server state version " + version);
+            }
+            SRP6Parameters params = SRP6Parameters.forStandardIndex(in.readUnsignedByte());
+            if(params == null) {
+                throw new CryptoException("Unknown group in server state");
+            }
+            byte[] algorithm = new byte[in.readUnsignedByte()];
+            in.readFully(algorithm);
+            long created = in.readLong();
+            byte[] identifier = readField(in);
+            byte[] salt = readField(in);
+            BigInteger v = new BigInteger(readField(in));
+            BigInteger b = new BigInteger(readField(in));
+            BigInteger B = new BigInteger(readField(in));
+            if(in.available() != 0) {
+                throw new CryptoException("Trailing data in server state");
+            }
+            return new SRP6ServerState(params, new String(algorithm, "US-ASCII"), created,
+                    identifier, salt, v, b, B);
+        } catch (IOException e) {
+            throw new CryptoException("Malformed server state", e);
+        } catch (NumberFormatException e) {
+            throw new CryptoException("Malformed server state", e);
+        }
+    }
+
+    private static void writeField(DataOutputStream out, byte[] field) throws IOException {
+        if(field.length > 0xFFFF) {
+            throw new IllegalArgumentException("Field too long for server state");
+        }
+        out.writeShort(field.length);
+        out.write(field);
+    }
+
+    private static byte[] readField(DataInputStream in) throws IOException {
+        byte[] field = new byte[in.readUnsignedShort()];
+        in.readFully(field);
+        return field;
+    }
+
+}
@@ -0,0 +1,290 @@
+package com.hoccer.talk.srp;
+
+import org.bouncycastle.crypto.Digest;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshot file of the derived data of a group
+ *
+ * Building the generator table takes from milliseconds for the
+ * 1024 bit group up to more than a second for the 8192 bit group.
+ * A snapshot holds everything derived from N and g, namely the
+ * generator table and the constants per digest algorithm, so
+ * other processes can start with them instead of building them.
+ *
+ * The format is a magic number and a version, followed by N, g,
+ * the table geometry and its entries as 32 bit limbs, then k and
+ * H(N) xor H(g) per digest algorithm. A CRC32 of all preceding
+ * bytes closes the file. All numbers are big-endian.
+ *
+ * Snapshots are read through a read-only memory mapping. The
+ * checksum only detects damaged files. Loading recomputes the
+ * group constants, which only takes two hashes each, and rejects
+ * the file if they differ. The generator table is too costly to
+ * rebuild, so every entry that is a product of others is checked
+ * against them, which leaves one entry per row and block that is
+ * trusted. A snapshot determines the server ephemerals and must be
+ * protected like the library itself.
+ *
+ */
+public class SRP6Snapshot {
+
+    public static final int MAGIC = 0x53525036;
+    public static final int VERSION = 1;
+
+    static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * Write the derived data of a group
+     *
+     * Builds the generator table and the constants for the given
+     * digests if necessary. The file is replaced atomically.
+     */
+    public static void write(SRP6Parameters params, Path file, Digest... digests) throws IOException {
+        SRP6FixedBaseTable table = params.getGeneratorTable();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        boolean written = false;
+        try {
+            writeTo(params, table, temporary, digests);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            written = true;
+        } finally {
+            if(!written) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    private static void writeTo(SRP6Parameters params, SRP6FixedBaseTable table, Path temporary, Digest... digests)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        OutputStream stream = Files.newOutputStream(temporary);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(stream, crc)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeNumber(out, params.N);
+            writeNumber(out, params.g);
+
+            int size = table.engine.getSize();
+            out.writeInt(table.bits);
+            out.writeInt(table.teeth);
+            out.writeInt(table.blocks);
+            out.writeInt(size);
+            for(long[][] block: table.table) {
+                for(long[] entry: block) {
+                    for(int j = 0; j < size; j++) {
+                        out.writeInt((int)entry[j]);
+                    }
+                }
+            }
+
+            out.writeInt(digests.length);
+            for(Digest digest: digests) {
+                SRP6Group group = params.getGroup(digest);
+                byte[] algorithm = group.getDigestAlgorithm().getBytes(ASCII);
+                out.writeInt(algorithm.length);
+                out.write(algorithm);
+                out.writeInt(group.getDigestSize());
+                writeNumber(out, group.getK());
+                out.writeInt(group.getH_Ng().length);
+                out.write(group.getH_Ng());
+            }
+            out.flush();
+            // the checksum itself is written past the checked stream
+            new DataOutputStream(stream).writeInt((int)crc.getValue());
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Load the derived data of a group
+     *
+     * Returns the standard parameter set if the snapshot is for
+     * a standard group, or a new parameter set otherwise. Data
+     * that the parameter set has built already is kept.
+     *
+     * The group constants stored for the given digests are
+     * recomputed and checked. Constants of other digests are
+     * skipped and computed on first use as usual.
+     *
+     * @throws IOException if the file can not be read, is damaged, inconsistent or has an unsupported version
+     */
+    public static SRP6Parameters load(Path file, Digest... digests) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(mapped, digests);
+        } finally {
+            channel.close();
+        }
+    }
+
+    static SRP6Parameters read(ByteBuffer buffer, Digest... digests) throws IOException {
+        if(buffer.remaining() < 12) {
+            throw new IOException("Truncated group snapshot");
+        }
+        ByteBuffer body = buffer.duplicate();
+        body.limit(buffer.limit() - 4);
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        if((int)crc.getValue() != buffer.getInt(buffer.limit() - 4)) {
+            throw new IOException("Group snapshot checksum mismatch");
+        }
+        try {
+            if(body.getInt() != MAGIC) {
+                throw new IOException("Not a group snapshot");
+            }
+            int version = body.getInt();
+            if(version != VERSION) {
+                throw new IOException("Unsupported group snapshot version " + version);
+            }
+            BigInteger N = readNumber(body);
+            BigInteger g = readNumber(body);
+            if(N.signum() <= 0 || !N.testBit(0) || g.signum() <= 0 || g.compareTo(N) >= 0) {
+                throw new IOException("Invalid group in group snapshot");
+            }
+            SRP6Parameters params = SRP6Parameters.forGroup(N, g);
+            if(params == null) {
+                params = new SRP6Parameters(N, g);
+            }
+
+            SRP6Montgomery engine = params.getMontgomery();
+            int bits = body.getInt();
+            int teeth = body.getInt();
+            int blocks = body.getInt();
+            int size = body.getInt();
+            if(size != engine.getSize() || teeth < 1 || teeth > 16 || blocks < 1
+                    || bits != N.bitLength() || (long)blocks * size << teeth > body.remaining() / 4) {
+                throw new IOException("Invalid table geometry in group snapshot");
+            }
+            long[][][] entries = new long[blocks][1 << teeth][];
+            int[] limbs = new int[size << teeth];
+            for(long[][] block: entries) {
+                // bulk copy out of the mapping, one block at a time
+                body.asIntBuffer().get(limbs);
+                body.position(body.position() + 4 * limbs.length);
+                for(int i = 0; i < block.length; i++) {
+                    long[] entry = engine.newElement();
+                    for(int j = 0; j < size; j++) {
+                        entry[j] = limbs[i * size + j] & SRP6Montgomery.MASK;
+                    }
+                    block[i] = entry;
+                }
+            }
+            Arrays.fill(limbs, 0);
+            checkTable(engine, g, entries);
+
+            List<SRP6Group> groups = new ArrayList<SRP6Group>();
+            int count = body.getInt();
+            for(int c = 0; c < count; c++) {
+                String algorithm = new String(readBytes(body), ASCII);
+                int digestSize = body.getInt();
+                BigInteger k = readNumber(body);
+                byte[] H_Ng = readBytes(body);
+                for(Digest digest: digests) {
+                    if(digest.getAlgorithmName().equals(algorithm)) {
+                        SRP6Group group = new SRP6Group(params, digest);
+                        if(group.getDigestSize() != digestSize || !group.getK().equals(k)
+                                || !Arrays.equals(group.getH_Ng(), H_Ng)) {
+                            throw new IOException("Group constants for " + algorithm + " do not match group snapshot");
+                        }
+                        groups.add(group);
+                    }
+                }
+            }
+            if(body.hasRemaining()) {
+                throw new IOException("Trailing data in group snapshot");
+            }
+            // install only once the whole file has been checked
+            params.installGeneratorTable(new SRP6FixedBaseTable(engine, g, bits, teeth, blocks, entries));
+            for(SRP6Group group: groups) {
+                params.installGroup(group);
+            }
+            return params;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated group snapshot", e);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed group snapshot", e);
+        }
+    }
+
+    /**
+     * Check the generator table for consistency
+     *
+     * Every block starts with one, the first block of the first
+     * row holds g and every other entry must be the product of
+     * the entries for its highest row and the remaining rows.
+     */
+    private static void checkTable(SRP6Montgomery engine, BigInteger g, long[][][] entries) throws IOException {
+        SRP6Montgomery.Workspace ws = engine.newWorkspace();
+        long[] expected = engine.newElement();
+        engine.toMontgomery(g, expected, ws);
+        if(!Arrays.equals(expected, entries[0][1])) {
+            throw new IOException("Generator table does not match group snapshot");
+        }
+        long[] one = engine.newElement();
+        engine.setOne(one);
+        for(long[][] block: entries) {
+            if(!Arrays.equals(one, block[0])) {
+                throw new IOException("Inconsistent generator table in group snapshot");
+            }
+            for(int j = 3; j < block.length; j++) {
+                int high = Integer.highestOneBit(j);
+                if(high == j) {
+                    continue;
+                }
+                engine.multiply(block[j ^ high], block[high], expected, ws);
+                if(!Arrays.equals(expected, block[j])) {
+                    throw new IOException("Inconsistent generator table in group snapshot");
+                }
+            }
+        }
+        ws.clear();
+    }
+
+    private static void writeNumber(DataOutputStream out, BigInteger value) throws IOException {
+        byte[] bytes = value.toByteArray();
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static BigInteger readNumber(ByteBuffer in) throws IOException {
+        byte[] bytes = readBytes(in);
+        if(bytes.length == 0) {
+            throw new IOException("Empty number in group snapshot");
+        }
+        return new BigInteger(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if(length < 0 || length > in.remaining()) {
+            throw new IOException("Invalid field length in group snapshot");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.hoccer.talk.srp;
+
+import org.bouncycastle.crypto.CryptoException;
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.modes.GCMBlockCipher;
+import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * AEAD sealing of pending server handshake state
+ *
+ * Encrypts and authenticates encoded {@link SRP6ServerState}s
+ * with AES-GCM under a key shared by all login nodes, so that
+ * the state can be handed to the client and returned with the
+ * second handshake message.
+ *
+ * The sealed format is the state version, a random 96 bit
+ * nonce and the ciphertext with a 128 bit tag. The version
+ * byte is authenticated as associated data.
+ *
+ * A sealed state can be presented more than once until it
+ * expires. Callers that need single use must track it.
+ *
+ * The age of a state is measured between the clock of the node
+ * that sealed it and the clock of the node that unseals it. The
+ * maximum age therefore includes any skew between nodes, and
+ * states stamped up to the maximum skew in the future, by a node
+ * whose clock runs ahead, are accepted.
+ *
+ * This class is thread-safe.
+ *
+ */
+public class SRP6StateSealer {
+
+    /** Default tolerance for clocks of other nodes running ahead, in milliseconds */
+    public static final long DEFAULT_MAX_SKEW = 5000;
+
+    static final int NONCE_LENGTH = 12;
+    static final int TAG_BITS = 128;
+
+    final byte[] key;
+    final SecureRandom random;
+    final long maxAge;
+    final long maxSkew;
+
+    /** Create a sealer tolerating {@link #DEFAULT_MAX_SKEW} between nodes */
+    public SRP6StateSealer(byte[] key, SecureRandom random, long maxAge) {
+        this(key, random, maxAge, DEFAULT_MAX_SKEW);
+    }
+
+    /**
+     * Create a sealer
+     *
+     * @param key AES key of 16, 24 or 32 bytes
+     * @param random source for nonces, or null for {@link SRP6RandomSource#getDefault()}
+     * @param maxAge maximum age of accepted states in milliseconds, measured across nodes
+     * @param maxSkew how far in the future a state may be stamped, in milliseconds
+     */
+    public SRP6StateSealer(byte[] key, SecureRandom random, long maxAge, long maxSkew) {
+        if(key.length != 16 && key.length != 24 && key.length != 32) {
+            throw new IllegalArgumentException("Invalid AES key length: " + key.length);
+        }
+        if(maxSkew < 0) {
+            throw new IllegalArgumentException("Invalid clock skew: " + maxSkew);
+        }
+        this.key = key.clone();
+        this.random = SRP6RandomSource.orDefault(random);
+        this.maxAge = maxAge;
+        this.maxSkew = maxSkew;
+    }
+
+    public byte[] seal(SRP6ServerState state) {
+        byte[] plain = state.encode();
+        byte[] header = { (byte)SRP6ServerState.VERSION };
+        byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+
+        GCMBlockCipher cipher = newCipher(true, nonce, header);
+        byte[] sealed = new byte[header.length + NONCE_LENGTH + cipher.getOutputSize(plain.length)];
+        System.arraycopy(header, 0, sealed, 0, header.length);
+        System.arraycopy(nonce, 0, sealed, header.length, NONCE_LENGTH);
+        int offset = header.length + NONCE_LENGTH;
+        try {
+            int length = cipher.processBytes(plain, 0, plain.length, sealed, offset);
+            cipher.doFinal(sealed, offset + length);
+        } catch (InvalidCipherTextException e) {
+            throw new IllegalStateException("Could not seal server state", e);
+        } finally {
+            Arrays.fill(plain, (byte)0);
+        }
+        return sealed;
+    }
+
+    public SRP6ServerState unseal(byte[] sealed) throws CryptoException {
+        int offset = 1 + NONCE_LENGTH;
+        if(sealed.length < offset + TAG_BITS / 8) {
+            throw new CryptoException("Sealed server state too short");
+        }
+        if(sealed[0] != SRP6ServerState.VERSION) {
+            throw new CryptoException("Unsupported sealed state version " + sealed[0]);
+        }
+        byte[] header = { sealed[0] };
+        byte[] nonce = Arrays.copyOfRange(sealed, 1, offset);
+
+        GCMBlockCipher cipher = newCipher(false, nonce, header);
+        byte[] plain = new byte[cipher.getOutputSize(sealed.length - offset)];
+        try {
+            int length = cipher.processBytes(sealed, offset, sealed.length - offset, plain, 0);
+            cipher.doFinal(plain, length);
+            SRP6ServerState state = SRP6ServerState.decode(plain);
+            long age = System.currentTimeMillis() - state.getCreated();
+            if(age < -maxSkew || age > maxAge) {
+                throw new CryptoException("Server state expired");
+            }
+            return state;
+        } catch (InvalidCipherTextException e) {
+            throw new CryptoException("Server state failed authentication", e);
+        } finally {
+            Arrays.fill(plain, (byte)0);
+        }
+    }
+
+    private GCMBlockCipher newCipher(boolean encrypt, byte[] nonce, byte[] header) {
+        GCMBlockCipher cipher = new GCMBlockCipher(new AESEngine());
+        cipher.init(encrypt, new AEADParameters(new KeyParameter(key), TAG_BITS, nonce, header));
+        return cipher;
+    }
+
+}
@@ -4,6 +4,8 @@ import org.bouncycastle.crypto.Digest;
 import org.bouncycastle.util.BigIntegers;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public class SRP6Verification {
 
@@ -60,6 +62,160 @@ public class SRP6Verification {
         return output;
     }
 
+    /**
+     * Calculate M1 through a streaming encoder
+     *
+     * A and B are fed into the digest without building
+     * intermediate arrays. The result is written to out
+     * at the given offset.
+     */
+    public static void calculateM1(
+            Digest digest,
+            byte[] H_Ng,
+            byte[] I,
+            byte[] s,
+            BigInteger A, BigInteger B,
+            byte[] K,
+            SRP6DigestEncoder encoder,
+            byte[] out, int outOff
+    ) {
+        calculateM1(digest, H_Ng, null, I, s, A, B, K, encoder, out, outOff);
+    }
+
+    /**
+     * Calculate M1 with H(I) from a cache
+     *
+     * Hashes the identity through the encoder if the
+     * cache is null.
+     */
+    public static void calculateM1(
+            Digest digest,
+            byte[] H_Ng,
+            SRP6IdentityHashCache hashes,
+            byte[] I,
+            byte[] s,
+            BigInteger A, BigInteger B,
+            byte[] K,
+            SRP6DigestEncoder encoder,
+            byte[] out, int outOff
+    ) {
+        byte[] H_I = (hashes != null) ? hashes.get(digest, I) : encoder.hash(digest, I);
+
+        digest.update(H_Ng, 0, H_Ng.length);
+        digest.update(H_I, 0, digest.getDigestSize());
+        digest.update(s, 0, s.length);
+        encoder.update(digest, A);
+        encoder.update(digest, B);
+        digest.update(K, 0, K.length);
+
+        digest.doFinal(out, outOff);
+    }
+
+    /**
+     * Calculate M1 from a per-account digest prefix
+     *
+     * Only A, B and K are hashed, the prefix stands in
+     * for H_Ng, H(I) and s.
+     */
+    public static void calculateM1(
+            Digest digest,
+            SRP6DigestPrefix prefix,
+            BigInteger A, BigInteger B,
+            byte[] K,
+            SRP6DigestEncoder encoder,
+            byte[] out, int outOff
+    ) {
+        prefix.restore(digest);
+        encoder.update(digest, A);
+        encoder.update(digest, B);
+        digest.update(K, 0, K.length);
+
+        digest.doFinal(out, outOff);
+    }
+
+    /**
+     * Calculate M2 through a streaming encoder
+     *
+     * The result is written to out at the given offset.
+     */
+    public static void calculateM2(
+            Digest digest,
+            BigInteger A,
+            byte[] M1, int M1Off,
+            byte[] K,
+            SRP6DigestEncoder encoder,
+            byte[] out, int outOff
+    ) {
+        encoder.update(digest, A);
+        digest.update(M1, M1Off, digest.getDigestSize());
+        digest.update(K, 0, K.length);
+
+        digest.doFinal(out, outOff);
+    }
+
+    /**
+     * Calculate u = H(PAD(A) | PAD(B))
+     *
+     * Same as {@link org.bouncycastle.crypto.agreement.srp.SRP6Util#calculateU}
+     * but pads through the encoder instead of copying.
+     */
+    public static BigInteger calculateU(
+            Digest digest, int length,
+            BigInteger A, BigInteger B,
+            SRP6DigestEncoder encoder
+    ) {
+        encoder.updatePadded(digest, A, length);
+        encoder.updatePadded(digest, B, length);
+        byte[] hash = encoder.doFinal(digest);
+        return new BigInteger(1, Arrays.copyOf(hash, digest.getDigestSize()));
+    }
+
+    /** Calculate the session key H(S) into out */
+    public static void calculateKey(Digest digest, BigInteger S, SRP6DigestEncoder encoder, byte[] out, int outOff) {
+        encoder.update(digest, S);
+        digest.doFinal(out, outOff);
+    }
+
+    /**
+     * Compare a computed verifier with a received one
+     *
+     * Runs in time that only depends on the length of the
+     * computed value, not on the position of a mismatch.
+     * Received values of the wrong length never match.
+     */
+    public static boolean verifierEquals(byte[] expected, int off, int len, byte[] received) {
+        if(received == null) {
+            return false;
+        }
+        // lengths are public, compare against ourselves on mismatch
+        byte[] other = (received.length == len) ? received : expected;
+        int otherOff = (received.length == len) ? 0 : off;
+        int diff = received.length ^ len;
+        for(int i = 0; i < len; i++) {
+            diff |= expected[off + i] ^ other[otherOff + i];
+        }
+        return diff == 0;
+    }
+
+    /**
+     * Compare a computed verifier with the remaining bytes of a buffer
+     *
+     * Works like {@link #verifierEquals}, reading the received value
+     * in place. The position of the buffer is not changed. Lengths
+     * are public, so a length mismatch returns at once.
+     */
+    public static boolean remainingEquals(byte[] expected, int off, int len, ByteBuffer received) {
+        if(received == null || received.remaining() != len) {
+            return false;
+        }
+        int start = received.position();
+        int diff = 0;
+        for(int i = 0; i < len; i++) {
+            diff |= expected[off + i] ^ received.get(start + i);
+        }
+        return diff == 0;
+    }
+
     public static byte[] calculateM2(Digest digest, BigInteger A, byte[] M1, byte[] K) {
         byte[] bA  = BigIntegers.asUnsignedByteArray(A);
 
@@ -0,0 +1,71 @@
+package com.hoccer.talk.srp;
+
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.util.Memoable;
+
+import java.math.BigInteger;
+
+/**
+ * Stored credentials of an account
+ *
+ * Holds everything a server needs to authenticate an
+ * identity: the group the verifier was generated for,
+ * the salt and the verifier v = g^x.
+ *
+ * Instances are immutable, apart from a cached digest
+ * prefix. The arrays are shared and must not be modified.
+ *
+ */
+public class SRP6VerifierRecord {
+
+    final SRP6Parameters params;
+    final byte[] identity;
+    final byte[] salt;
+    final BigInteger verifier;
+
+    /** Prefix of M1 for the digest last asked for */
+    volatile SRP6DigestPrefix prefix;
+
+    public SRP6VerifierRecord(SRP6Parameters params, byte[] identity, byte[] salt, BigInteger verifier) {
+        this.params = params;
+        this.identity = identity;
+        this.salt = salt;
+        this.verifier = verifier;
+    }
+
+    public SRP6Parameters getParameters() {
+        return params;
+    }
+
+    public byte[] getIdentity() {
+        return identity;
+    }
+
+    public byte[] getSalt() {
+        return salt;
+    }
+
+    public BigInteger getVerifier() {
+        return verifier;
+    }
+
+    /**
+     * Get the M1 prefix of this account for the given group
+     *
+     * Created on first use and kept with the record, so a
+     * cached record also caches its prefix. Returns null if
+     * the digest can not be copied.
+     */
+    public SRP6DigestPrefix getDigestPrefix(SRP6Group group, Digest digest) {
+        if(!(digest instanceof Memoable)) {
+            return null;
+        }
+        SRP6DigestPrefix current = prefix;
+        if(current == null || !current.getDigestAlgorithm().equals(digest.getAlgorithmName())) {
+            current = new SRP6DigestPrefix(group, digest, identity, salt);
+            prefix = current;
+        }
+        return current;
+    }
+
+}
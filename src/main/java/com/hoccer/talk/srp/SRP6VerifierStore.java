@@ -0,0 +1,19 @@
+package com.hoccer.talk.srp;
+
+/**
+ * Source of account credentials
+ *
+ * Implemented on top of the account database. Lookups
+ * may be called concurrently from any number of threads.
+ *
+ */
+public interface SRP6VerifierStore {
+
+    /**
+     * Look up the credentials of an identity
+     *
+     * Returns null if the identity is unknown.
+     */
+    SRP6VerifierRecord lookup(byte[] identity);
+
+}
@@ -1,13 +1,30 @@
 package com.hoccer.talk.srp;
 
 import org.bouncycastle.crypto.CryptoException;
+import org.bouncycastle.crypto.Digest;
 import org.bouncycastle.crypto.agreement.srp.SRP6Client;
+import org.bouncycastle.crypto.agreement.srp.SRP6Util;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class SRP6VerifyingClient extends SRP6Client {
 
+    protected SRP6Parameters params;
+    protected SRP6Group group;
+    protected SRP6Montgomery.Workspace workspace;
+    protected SRP6Residue[] residues;
+
+    /** Workspace for g^x while g^a is calculated in parallel */
+    protected SRP6Montgomery.Workspace sideWorkspace;
+
+    /** True if residue 2 holds g^x for the current credentials */
+    protected boolean powerOfXReady;
+
     protected byte[] s;
     protected byte[] I;
 
@@ -16,31 +33,309 @@ public class SRP6VerifyingClient extends SRP6Client {
     protected byte[] M1;
     protected byte[] M2;
 
+    /** Reusable storage for K */
+    protected byte[] keyBuffer;
+
+    /** Streaming encoder for digest input */
+    protected SRP6DigestEncoder encoder;
+
+    protected SRP6Metrics metrics = SRP6Metrics.NONE;
+
+    protected SRP6PublicValueCheck check = SRP6PublicValueCheck.DEFAULT;
+
+    /** Optional digest state after the account prefix of M1 */
+    protected SRP6DigestPrefix prefix;
+
+    /** Optional cache of H(I) */
+    protected SRP6IdentityHashCache identityHashes;
+
+    @Override
+    public void init(BigInteger N, BigInteger g, Digest digest, SecureRandom random) {
+        super.init(N, g, digest, SRP6RandomSource.orDefault(random));
+        params = SRP6Parameters.forGroup(N, g);
+        if(params != null) {
+            group = params.getGroup(digest);
+        } else {
+            group = new SRP6Group(new SRP6Parameters(N, g), digest);
+        }
+    }
+
+    public void init(SRP6Parameters params, Digest digest, SecureRandom random) {
+        init(params.getGroup(digest), digest, random);
+    }
+
+    public void init(SRP6Group group, Digest digest, SecureRandom random) {
+        if(!group.matches(digest)) {
+            throw new IllegalArgumentException("Group constants are not for digest " + digest.getAlgorithmName());
+        }
+        super.init(group.getN(), group.getG(), digest, SRP6RandomSource.orDefault(random));
+        this.params = group.getParameters();
+        this.group = group;
+    }
+
+    /**
+     * Use a precomputed prefix for M1
+     *
+     * The prefix is only used if it matches the digest, the
+     * identity and the salt of the handshake, so a client
+     * can keep it across logins of the same account.
+     */
+    public void setDigestPrefix(SRP6DigestPrefix prefix) {
+        this.prefix = prefix;
+    }
+
+    /** Take H(I) from the given cache when there is no matching prefix */
+    public void setIdentityHashCache(SRP6IdentityHashCache identityHashes) {
+        this.identityHashes = identityHashes;
+    }
+
+    /** Validate received public values with the given check */
+    public void setPublicValueCheck(SRP6PublicValueCheck check) {
+        this.check = (check != null) ? check : SRP6PublicValueCheck.DEFAULT;
+    }
+
+    /** Report handshake phases to the given listener */
+    public void setMetrics(SRP6Metrics metrics) {
+        this.metrics = (metrics != null) ? metrics : SRP6Metrics.NONE;
+    }
+
     @Override
     public BigInteger generateClientCredentials(byte[] salt, byte[] identity, byte[] password) {
-        BigInteger credentials = super.generateClientCredentials(salt, identity, password);
+        long start = System.nanoTime();
+        x = SRP6Util.calculateX(digest, N, salt, identity, password);
+        a = selectPrivateValue();
+        ForkJoinTask<?> side = precomputePowerOfX();
+        A = powerOfG(a);
+        if(side != null) {
+            side.join();
+            powerOfXReady = true;
+        }
         s = salt;
         I = identity;
-        return credentials;
+        metrics.phaseCompleted(SRP6Metrics.Role.CLIENT, SRP6Metrics.Phase.CREDENTIALS, group, System.nanoTime() - start);
+        return A;
     }
 
     @Override
     public BigInteger calculateSecret(BigInteger serverB) throws CryptoException {
-        BigInteger secret = super.calculateSecret(serverB);
-        K = SRP6Verification.calculateHash(digest, secret);
-        return secret;
+        long start = System.nanoTime();
+        try {
+            B = check.validate(group, serverB);
+        } catch (CryptoException e) {
+            metrics.phaseFailed(SRP6Metrics.Role.CLIENT, SRP6Metrics.Phase.SECRET, group, e.getMessage());
+            throw e;
+        }
+        prepareBuffers();
+        u = SRP6Verification.calculateU(digest, group.getLength(), A, B, encoder);
+        S = calculateS();
+        SRP6Verification.calculateKey(digest, S, encoder, keyBuffer, 0);
+        K = keyBuffer;
+        metrics.phaseCompleted(SRP6Metrics.Role.CLIENT, SRP6Metrics.Phase.SECRET, group, System.nanoTime() - start);
+        return S;
+    }
+
+    /**
+     * Calculate the secret from a server value received in a buffer
+     *
+     * Decodes the remaining bytes of the buffer as an unsigned
+     * number of at most the group length, padded or not. The
+     * position of the buffer is not changed.
+     */
+    public BigInteger calculateSecret(ByteBuffer serverB) throws CryptoException {
+        return calculateSecret(SRP6WireCodec.toNumber(serverB, group));
     }
 
+    /**
+     * Calculate the premaster secret S = (B - k * g^x)^(a + u * x) mod N
+     *
+     * The base is assembled in Montgomery form using the generator
+     * table, leaving a single exponentiation by a + u * x. In
+     * parallel mode g^x is already known from the credentials.
+     */
+    protected BigInteger calculateS() {
+        BigInteger k = group.getK();
+        BigInteger exponent = u.multiply(x).add(a);
+        BigInteger base;
+        if(params != null && params.getGeneratorTable().covers(x)) {
+            SRP6Montgomery.Workspace ws = workspace();
+            SRP6Residue gx = residue(2);
+            if(!powerOfXReady) {
+                gx.setPower(params.getGeneratorTable(), x, ws);
+            }
+            powerOfXReady = false;
+            SRP6Residue kgx = residue(0).set(k, ws).multiply(gx, ws);
+            base = residue(1).set(B, ws).subtract(kgx).toBigInteger(ws);
+        } else {
+            base = B.subtract(g.modPow(x, N).multiply(k).mod(N)).mod(N);
+        }
+        return base.modPow(exponent, N);
+    }
+
+    /**
+     * Calculate M1
+     *
+     * Returns a new array, the internal buffer is wiped
+     * when the server verifier is checked.
+     */
     public byte[] calculateVerifier() {
-        M1 = SRP6Verification.calculateM1(digest, N, g, I, s, A, B, K);
-        return M1;
+        calculateExpectedM1();
+        return M1.clone();
+    }
+
+    /**
+     * Calculate M1 into the given array
+     *
+     * Returns the number of bytes written, the digest size.
+     */
+    public int calculateVerifier(byte[] out, int outOff) {
+        calculateExpectedM1();
+        System.arraycopy(M1, 0, out, outOff, M1.length);
+        return M1.length;
+    }
+
+    private void calculateExpectedM1() {
+        prepareBuffers();
+        long start = System.nanoTime();
+        calculateM1();
+        metrics.phaseCompleted(SRP6Metrics.Role.CLIENT, SRP6Metrics.Phase.M1, group, System.nanoTime() - start);
     }
 
+    /** Calculate M1, from the digest prefix if it matches */
+    protected void calculateM1() {
+        if(prefix != null && prefix.matches(digest, I, s)) {
+            SRP6Verification.calculateM1(digest, prefix, A, B, K, encoder, M1, 0);
+        } else {
+            SRP6IdentityHashCache hashes = identityHashes;
+            if(hashes != null && !hashes.getDigestAlgorithm().equals(digest.getAlgorithmName())) {
+                hashes = null;
+            }
+            SRP6Verification.calculateM1(digest, hashNg(), hashes, I, s, A, B, K, encoder, M1, 0);
+        }
+    }
+
+    /**
+     * Check the server verifier
+     *
+     * The expected M2 is compared in constant time. The
+     * session key, M1 and the private value are wiped
+     * afterwards, whether the check succeeds or not.
+     */
     public void verifyServer(byte[] M2s) throws CryptoException {
-        M2 = SRP6Verification.calculateM2(digest, A, M1, K);
-        if(!Arrays.equals(M2, M2s)) {
+        calculateExpectedM2();
+        completeVerification(SRP6Verification.verifierEquals(M2, 0, M2.length, M2s));
+    }
+
+    /**
+     * Check a server verifier received in a buffer
+     *
+     * Compares the remaining bytes of the buffer in place,
+     * for example a field read through {@link SRP6WireCodec}.
+     * The position of the buffer is not changed.
+     */
+    public void verifyServer(ByteBuffer M2s) throws CryptoException {
+        calculateExpectedM2();
+        completeVerification(SRP6Verification.remainingEquals(M2, 0, M2.length, M2s));
+    }
+
+    private void calculateExpectedM2() {
+        long start = System.nanoTime();
+        SRP6Verification.calculateM2(digest, A, M1, 0, K, encoder, M2, 0);
+        metrics.phaseCompleted(SRP6Metrics.Role.CLIENT, SRP6Metrics.Phase.M2, group, System.nanoTime() - start);
+    }
+
+    private void completeVerification(boolean matches) throws CryptoException {
+        wipeSecrets();
+        if(!matches) {
+            metrics.phaseFailed(SRP6Metrics.Role.CLIENT, SRP6Metrics.Phase.M2, group, "Incorrect server verifier M2");
             throw new CryptoException("Incorrect server verifier M2");
         }
     }
 
+    /** Zero the session key, M1 and M2, drop the private values */
+    protected void wipeSecrets() {
+        if(K != null) {
+            Arrays.fill(K, (byte)0);
+            K = null;
+        }
+        Arrays.fill(M1, (byte)0);
+        Arrays.fill(M2, (byte)0);
+        a = null;
+        x = null;
+        powerOfXReady = false;
+        if(residues != null) {
+            for(SRP6Residue residue: residues) {
+                residue.clear();
+            }
+        }
+    }
+
+    /** Calculate g^exponent mod N, using the group table when available */
+    protected BigInteger powerOfG(BigInteger exponent) {
+        if(params != null) {
+            return params.getGeneratorTable().pow(exponent, workspace(), params.getParallelPool());
+        }
+        return g.modPow(exponent, N);
+    }
+
+    /**
+     * Start calculating g^x on the parallel pool
+     *
+     * Returns null if the group is not in parallel mode.
+     */
+    protected ForkJoinTask<?> precomputePowerOfX() {
+        powerOfXReady = false;
+        final ForkJoinPool pool = (params != null) ? params.getParallelPool() : null;
+        if(pool == null || !params.getGeneratorTable().covers(x)) {
+            return null;
+        }
+        workspace();
+        final SRP6FixedBaseTable table = params.getGeneratorTable();
+        final SRP6Residue gx = residue(2);
+        final SRP6Montgomery.Workspace ws = sideWorkspace;
+        final BigInteger exponent = x;
+        return pool.submit(new Runnable() {
+            @Override
+            public void run() {
+                gx.setPower(table, exponent, ws);
+            }
+        });
+    }
+
+    /** Get H(N) xor H(g) from the group constants */
+    protected byte[] hashNg() {
+        return group.getH_Ng();
+    }
+
+    /** Make sure key and verifier buffers fit the current digest */
+    protected void prepareBuffers() {
+        int size = digest.getDigestSize();
+        if(size > SRP6DigestEncoder.CHUNK) {
+            throw new IllegalStateException("Digest " + digest.getAlgorithmName() + " is too large");
+        }
+        if(M1 == null || M1.length != size) {
+            M1 = new byte[size];
+            M2 = new byte[size];
+            keyBuffer = new byte[size];
+        }
+        if(encoder == null) {
+            encoder = new SRP6DigestEncoder();
+        }
+    }
+
+    /** Get the Montgomery workspace for this handshake */
+    protected SRP6Montgomery.Workspace workspace() {
+        SRP6Montgomery engine = params.getMontgomery();
+        if(workspace == null || workspace.getEngine() != engine) {
+            workspace = engine.newWorkspace();
+            sideWorkspace = engine.newWorkspace();
+            residues = new SRP6Residue[] { new SRP6Residue(engine), new SRP6Residue(engine), new SRP6Residue(engine) };
+        }
+        return workspace;
+    }
+
+    /** Get a reusable residue of the current workspace */
+    protected SRP6Residue residue(int index) {
+        return residues[index];
+    }
+
 }
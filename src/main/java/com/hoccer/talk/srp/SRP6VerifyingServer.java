@@ -5,11 +5,21 @@ import org.bouncycastle.crypto.Digest;
 import org.bouncycastle.crypto.agreement.srp.SRP6Server;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 public class SRP6VerifyingServer extends SRP6Server {
 
+    protected SRP6Parameters params;
+    protected SRP6Group group;
+    protected SRP6Montgomery.Workspace workspace;
+    protected SRP6Residue[] residues;
+
+    /** Optional source of precomputed ephemerals */
+    protected SRP6EphemeralPool ephemerals;
+
     protected byte[] s;
     protected byte[] I;
 
@@ -18,6 +28,37 @@ public class SRP6VerifyingServer extends SRP6Server {
     protected byte[] M1;
     protected byte[] M2;
 
+    /** Reusable storage for K */
+    protected byte[] keyBuffer;
+
+    /** Streaming encoder for digest input */
+    protected SRP6DigestEncoder encoder;
+
+    protected SRP6Metrics metrics = SRP6Metrics.NONE;
+
+    protected SRP6PublicValueCheck check = SRP6PublicValueCheck.DEFAULT;
+
+    /** Optional digest state after the account prefix of M1 */
+    protected SRP6DigestPrefix prefix;
+
+    /** Optional cache of H(I) */
+    protected SRP6IdentityHashCache identityHashes;
+
+    /** Optional throttle to report failed logins to */
+    protected SRP6LoginThrottle throttle;
+
+    @Override
+    public void init(BigInteger N, BigInteger g, BigInteger v, Digest digest, SecureRandom random) {
+        super.init(N, g, v, digest, SRP6RandomSource.orDefault(random));
+        prefix = null;
+        params = SRP6Parameters.forGroup(N, g);
+        if(params != null) {
+            group = params.getGroup(digest);
+        } else {
+            group = new SRP6Group(new SRP6Parameters(N, g), digest);
+        }
+    }
+
     public void initVerifiable(
             BigInteger N, BigInteger g,
             BigInteger v, byte[] identifier, byte[] salt,
@@ -27,23 +68,411 @@ public class SRP6VerifyingServer extends SRP6Server {
         I = identifier;
     }
 
+    public void initVerifiable(
+            SRP6Parameters params,
+            BigInteger v, byte[] identifier, byte[] salt,
+            Digest digest, SecureRandom random) {
+        initVerifiable(params.getGroup(digest), v, identifier, salt, digest, random);
+    }
+
+    public void initVerifiable(
+            SRP6Group group,
+            BigInteger v, byte[] identifier, byte[] salt,
+            Digest digest, SecureRandom random) {
+        if(!group.matches(digest)) {
+            throw new IllegalArgumentException("Group constants are not for digest " + digest.getAlgorithmName());
+        }
+        super.init(group.getN(), group.getG(), v, digest, SRP6RandomSource.orDefault(random));
+        this.prefix = null;
+        this.params = group.getParameters();
+        this.group = group;
+        s = salt;
+        I = identifier;
+    }
+
+    /**
+     * Start a handshake for the given account credentials
+     *
+     * Uses the digest prefix cached with the record for M1.
+     */
+    public void initVerifiable(SRP6VerifierRecord record, Digest digest, SecureRandom random) {
+        initVerifiable(record.getParameters(), record.getVerifier(),
+                record.getIdentity(), record.getSalt(), digest, random);
+        prefix = record.getDigestPrefix(group, digest);
+    }
+
+    /**
+     * Continue a handshake from exported state
+     *
+     * After this the server is ready for {@link #calculateSecret}.
+     */
+    public void initVerifiable(SRP6ServerState state, Digest digest, SecureRandom random) {
+        if(!state.getDigestAlgorithm().equals(digest.getAlgorithmName())) {
+            throw new IllegalArgumentException("Server state is not for digest " + digest.getAlgorithmName());
+        }
+        initVerifiable(state.getParameters(), state.getVerifier(),
+                state.getIdentifier(), state.getSalt(), digest, random);
+        b = state.getPrivateValue();
+        B = state.getPublicValue();
+    }
+
+    /**
+     * Export the pending handshake state
+     *
+     * Must be called after {@link #generateServerCredentials()}.
+     */
+    public SRP6ServerState exportState() {
+        if(b == null || B == null) {
+            throw new IllegalStateException("Server credentials have not been generated");
+        }
+        return new SRP6ServerState(params, digest.getAlgorithmName(), System.currentTimeMillis(),
+                I, s, v, b, B);
+    }
+
+    /**
+     * Use precomputed ephemerals from the given pool
+     *
+     * The pool is only used for handshakes in its own group
+     * and is kept across {@link #reset()}. Pass null to
+     * compute ephemerals inline again.
+     */
+    public void setEphemeralPool(SRP6EphemeralPool ephemerals) {
+        this.ephemerals = ephemerals;
+    }
+
+    /**
+     * Use a precomputed prefix for M1
+     *
+     * The prefix is only used if it matches the digest, the
+     * identity and the salt of the handshake. It is dropped
+     * when the server is initialized or reset.
+     */
+    public void setDigestPrefix(SRP6DigestPrefix prefix) {
+        this.prefix = prefix;
+    }
+
+    /** Take H(I) from the given cache when there is no matching prefix */
+    public void setIdentityHashCache(SRP6IdentityHashCache identityHashes) {
+        this.identityHashes = identityHashes;
+    }
+
+    /**
+     * Report failed logins to the given throttle
+     *
+     * Invalid client values and wrong client verifiers are
+     * charged to the identity of the handshake. Admission
+     * through {@link SRP6LoginThrottle#tryAcquire} is up to
+     * the caller, before the server is initialized.
+     */
+    public void setLoginThrottle(SRP6LoginThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    /** Validate received public values with the given check */
+    public void setPublicValueCheck(SRP6PublicValueCheck check) {
+        this.check = (check != null) ? check : SRP6PublicValueCheck.DEFAULT;
+    }
+
+    /** Report handshake phases to the given listener */
+    public void setMetrics(SRP6Metrics metrics) {
+        this.metrics = (metrics != null) ? metrics : SRP6Metrics.NONE;
+    }
+
+    @Override
+    public BigInteger generateServerCredentials() {
+        long start = System.nanoTime();
+        SRP6EphemeralPool.Ephemeral pair = selectEphemeral();
+        if(params != null) {
+            SRP6Montgomery.Workspace ws = workspace();
+            completeCredentials(pair, residue(0), residue(1), ws, params.getParallelPool());
+        } else {
+            B = group.getK().multiply(v).mod(N).add(g.modPow(b, N)).mod(N);
+        }
+        metrics.phaseCompleted(SRP6Metrics.Role.SERVER, SRP6Metrics.Phase.CREDENTIALS, group, System.nanoTime() - start);
+        return B;
+    }
+
+    /**
+     * Select the private value b
+     *
+     * Prefers a precomputed pair from the ephemeral pool and
+     * returns it, or returns null if b was selected here.
+     */
+    SRP6EphemeralPool.Ephemeral selectEphemeral() {
+        SRP6EphemeralPool.Ephemeral pair = null;
+        if(ephemerals != null && ephemerals.getParameters() == params) {
+            pair = ephemerals.take();
+        }
+        b = (pair != null) ? pair.getPrivateValue() : selectPrivateValue();
+        return pair;
+    }
+
+    /**
+     * Calculate B = k*v + g^b for the selected private value
+     *
+     * Works in Montgomery form on the given residues and
+     * workspace, which must belong to the group engine. The
+     * pair, if any, is wiped afterwards.
+     */
+    BigInteger completeCredentials(SRP6EphemeralPool.Ephemeral pair,
+                                   SRP6Residue kv, SRP6Residue power,
+                                   SRP6Montgomery.Workspace ws, ForkJoinPool pool) {
+        SRP6FixedBaseTable table = params.getGeneratorTable();
+        if(!table.covers(b)) {
+            if(pair != null) {
+                pair.wipe();
+            }
+            B = group.getK().multiply(v).mod(N).add(g.modPow(b, N)).mod(N);
+            return B;
+        }
+        kv.setScaled(v, group.getMultiplier(), ws);
+        if(pair != null) {
+            kv.add(pair.power, ws);
+            pair.wipe();
+        } else {
+            kv.add(power.setPower(table, b, ws, pool), ws);
+        }
+        B = kv.toBigInteger(ws);
+        return B;
+    }
+
     @Override
     public BigInteger calculateSecret(BigInteger clientA) throws CryptoException {
-        BigInteger secret = super.calculateSecret(clientA);
-        K = SRP6Verification.calculateHash(digest, secret);
-        return secret;
+        long start = System.nanoTime();
+        try {
+            A = check.validate(group, clientA);
+        } catch (CryptoException e) {
+            reportFailure();
+            metrics.phaseFailed(SRP6Metrics.Role.SERVER, SRP6Metrics.Phase.SECRET, group, e.getMessage());
+            throw e;
+        }
+        prepareBuffers();
+        u = SRP6Verification.calculateU(digest, group.getLength(), A, B, encoder);
+        S = calculateS();
+        SRP6Verification.calculateKey(digest, S, encoder, keyBuffer, 0);
+        K = keyBuffer;
+        metrics.phaseCompleted(SRP6Metrics.Role.SERVER, SRP6Metrics.Phase.SECRET, group, System.nanoTime() - start);
+        return S;
     }
 
+    /**
+     * Calculate the secret from a client value received in a buffer
+     *
+     * Decodes the remaining bytes of the buffer as an unsigned
+     * number of at most the group length, padded or not. The
+     * position of the buffer is not changed.
+     */
+    public BigInteger calculateSecret(ByteBuffer clientA) throws CryptoException {
+        return calculateSecret(SRP6WireCodec.toNumber(clientA, group));
+    }
+
+    /**
+     * Calculate the premaster secret S = (A * v^u)^b mod N
+     *
+     * Since u is only as long as the digest, v^u is cheap and
+     * the mixed base is raised to b in a single exponentiation.
+     * Splitting this into A^b * v^(u*b) for a simultaneous
+     * exponentiation would need more multiplications.
+     */
+    protected BigInteger calculateS() {
+        BigInteger mixed = v.modPow(u, N).multiply(A).mod(N);
+        return mixed.modPow(b, N);
+    }
+
+    /**
+     * Check the client verifier and produce M2
+     *
+     * The expected M1 is compared in constant time. The
+     * session key, the expected M1 and the private value are
+     * wiped afterwards, whether the check succeeds or not,
+     * and M2 is only calculated for a matching client.
+     *
+     * Returns M2 in a new array, which stays valid after
+     * the server is reset.
+     */
     public byte[] verifyClient(byte[] M1c) throws CryptoException {
-        M1 = SRP6Verification.calculateM1(digest, N, g, I, s, A, B, K);
+        long computed = calculateExpectedM1();
+        completeVerification(SRP6Verification.verifierEquals(M1, 0, M1.length, M1c), computed);
+        return M2.clone();
+    }
 
-        M2 = SRP6Verification.calculateM2(digest, A, M1, K);
+    /**
+     * Check the client verifier and write M2 into the given array
+     *
+     * Returns the number of bytes written, the digest size.
+     */
+    public int verifyClient(byte[] M1c, byte[] out, int outOff) throws CryptoException {
+        long computed = calculateExpectedM1();
+        completeVerification(SRP6Verification.verifierEquals(M1, 0, M1.length, M1c), computed);
+        System.arraycopy(M2, 0, out, outOff, M2.length);
+        return M2.length;
+    }
 
-        if(Arrays.equals(M1, M1c)) {
-            return M2;
-        } else {
+    /**
+     * Check a client verifier received in a buffer
+     *
+     * Compares the remaining bytes of the buffer in place,
+     * for example a field read through {@link SRP6WireCodec}.
+     * The position of the buffer is not changed. Returns M2
+     * in a new array.
+     */
+    public byte[] verifyClient(ByteBuffer M1c) throws CryptoException {
+        long computed = calculateExpectedM1();
+        completeVerification(SRP6Verification.remainingEquals(M1, 0, M1.length, M1c), computed);
+        return M2.clone();
+    }
+
+    /**
+     * Check a client verifier received in a buffer and put M2 into another
+     *
+     * M2 is written at the position of the output buffer,
+     * which is moved past it.
+     */
+    public void verifyClient(ByteBuffer M1c, ByteBuffer out) throws CryptoException {
+        long computed = calculateExpectedM1();
+        completeVerification(SRP6Verification.remainingEquals(M1, 0, M1.length, M1c), computed);
+        out.put(M2, 0, M2.length);
+    }
+
+    /** Calculate the expected M1, returns the time it was done */
+    private long calculateExpectedM1() {
+        prepareBuffers();
+
+        long start = System.nanoTime();
+        calculateM1();
+        long computed = System.nanoTime();
+        metrics.phaseCompleted(SRP6Metrics.Role.SERVER, SRP6Metrics.Phase.M1, group, computed - start);
+        return computed;
+    }
+
+    /** Fail on a mismatch, otherwise calculate M2 into the internal buffer */
+    private void completeVerification(boolean matches, long computed) throws CryptoException {
+        if(!matches) {
+            wipeSecrets();
+            reportFailure();
+            metrics.phaseFailed(SRP6Metrics.Role.SERVER, SRP6Metrics.Phase.M1, group, "Incorrect client M1");
             throw new CryptoException("Incorrect client M1");
         }
+
+        SRP6Verification.calculateM2(digest, A, M1, 0, K, encoder, M2, 0);
+        wipeSecrets();
+        metrics.phaseCompleted(SRP6Metrics.Role.SERVER, SRP6Metrics.Phase.M2, group, System.nanoTime() - computed);
+    }
+
+    /** Calculate the expected M1, from the digest prefix if it matches */
+    protected void calculateM1() {
+        if(prefix != null && prefix.matches(digest, I, s)) {
+            SRP6Verification.calculateM1(digest, prefix, A, B, K, encoder, M1, 0);
+        } else {
+            SRP6IdentityHashCache hashes = identityHashes;
+            if(hashes != null && !hashes.getDigestAlgorithm().equals(digest.getAlgorithmName())) {
+                hashes = null;
+            }
+            SRP6Verification.calculateM1(digest, hashNg(), hashes, I, s, A, B, K, encoder, M1, 0);
+        }
+    }
+
+    /** Charge a failed login to the identity of the handshake */
+    protected void reportFailure() {
+        if(throttle != null && I != null) {
+            throttle.reportFailure(I);
+        }
+    }
+
+    /** Zero the session key and the expected M1, drop the private value */
+    protected void wipeSecrets() {
+        if(K != null) {
+            Arrays.fill(K, (byte)0);
+            K = null;
+        }
+        Arrays.fill(M1, (byte)0);
+        b = null;
+    }
+
+    /**
+     * Reset this server for another handshake
+     *
+     * Zeroes all secret handshake state and drops the references
+     * to per-handshake values. The digest, the group binding and
+     * the reusable buffers are kept, so the instance can be
+     * initialized again without reallocating them.
+     */
+    public void reset() {
+        if(K != null) {
+            Arrays.fill(K, (byte)0);
+            K = null;
+        }
+        if(M1 != null) {
+            Arrays.fill(M1, (byte)0);
+            Arrays.fill(M2, (byte)0);
+        }
+        if(keyBuffer != null) {
+            Arrays.fill(keyBuffer, (byte)0);
+        }
+        if(encoder != null) {
+            encoder.clear();
+        }
+        if(workspace != null) {
+            workspace.clear();
+            for(SRP6Residue residue: residues) {
+                residue.clear();
+            }
+        }
+        if(digest != null) {
+            digest.reset();
+        }
+        s = null;
+        I = null;
+        prefix = null;
+        v = null;
+        b = null;
+        A = null;
+        B = null;
+        u = null;
+        S = null;
+        super.M1 = null;
+        super.M2 = null;
+        Key = null;
+    }
+
+    public Digest getDigest() {
+        return digest;
+    }
+
+    /** Get H(N) xor H(g) from the group constants */
+    protected byte[] hashNg() {
+        return group.getH_Ng();
+    }
+
+    /** Make sure key and verifier buffers fit the current digest */
+    protected void prepareBuffers() {
+        int size = digest.getDigestSize();
+        if(size > SRP6DigestEncoder.CHUNK) {
+            throw new IllegalStateException("Digest " + digest.getAlgorithmName() + " is too large");
+        }
+        if(M1 == null || M1.length != size) {
+            M1 = new byte[size];
+            M2 = new byte[size];
+            keyBuffer = new byte[size];
+        }
+        if(encoder == null) {
+            encoder = new SRP6DigestEncoder();
+        }
+    }
+
+    /** Get the Montgomery workspace for this handshake */
+    protected SRP6Montgomery.Workspace workspace() {
+        SRP6Montgomery engine = params.getMontgomery();
+        if(workspace == null || workspace.getEngine() != engine) {
+            workspace = engine.newWorkspace();
+            residues = new SRP6Residue[] { new SRP6Residue(engine), new SRP6Residue(engine) };
+        }
+        return workspace;
+    }
+
+    /** Get a reusable residue of the current workspace */
+    protected SRP6Residue residue(int index) {
+        return residues[index];
     }
 
 }
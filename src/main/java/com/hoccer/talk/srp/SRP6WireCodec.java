@@ -0,0 +1,172 @@
+package com.hoccer.talk.srp;
+
+import org.bouncycastle.crypto.CryptoException;
+
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary codec for handshake message fields
+ *
+ * Every field is an unsigned 16 bit big-endian length followed
+ * by that many bytes. Numbers such as A and B are written as
+ * unsigned big-endian values left-padded with zeros to the byte
+ * length of the group, so their encoded size does not depend on
+ * the value. Salts and the verifiers M1 and M2 are written as is.
+ *
+ * Fields are read from and written to a {@link ByteBuffer}, heap
+ * or direct, starting at its position. Byte fields are returned
+ * as slices of the input, so a received verifier can be passed
+ * on to {@link SRP6VerifyingServer#verifyClient(ByteBuffer)} or
+ * {@link SRP6VerifyingClient#verifyServer(ByteBuffer)} and is
+ * compared where it lies. Numbers are decoded into a single
+ * array, as {@link BigInteger} can not be built from a buffer.
+ *
+ * Malformed input fails with a {@link CryptoException}, like any
+ * other invalid value received from the peer. Writing to a buffer
+ * without enough space fails with a
+ * {@link java.nio.BufferOverflowException} before anything is
+ * written, so the buffer is left unchanged.
+ *
+ */
+public class SRP6WireCodec {
+
+    /** Maximum length of a single field */
+    public static final int MAX_LENGTH = 0xffff;
+
+    /** Padding source, as long as the largest standard group */
+    private static final byte[] ZEROS = new byte[1024];
+
+    /** Encoded size of a number of the given group */
+    public static int numberSize(SRP6Group group) {
+        return 2 + group.getLength();
+    }
+
+    /** Encoded size of a byte field of the given length */
+    public static int bytesSize(int length) {
+        return 2 + length;
+    }
+
+    /** Write a number padded to the length of the group */
+    public static void putNumber(ByteBuffer out, BigInteger value, SRP6Group group) {
+        putNumber(out, value, group.getLength());
+    }
+
+    /**
+     * Write a number padded to the given width
+     *
+     * @throws IllegalArgumentException if the number is negative or does not fit
+     */
+    public static void putNumber(ByteBuffer out, BigInteger value, int width) {
+        if(value.signum() < 0) {
+            throw new IllegalArgumentException("Negative number");
+        }
+        // one array is unavoidable, see SRP6DigestEncoder
+        byte[] bytes = value.toByteArray();
+        int off = (bytes[0] == 0 && bytes.length > 1) ? 1 : 0;
+        int len = bytes.length - off;
+        if(len > width || width > MAX_LENGTH) {
+            throw new IllegalArgumentException("Number does not fit in " + width + " bytes");
+        }
+        if(out.remaining() < 2 + width) {
+            throw new BufferOverflowException();
+        }
+        putLength(out, width);
+        for(int pad = width - len; pad > 0; pad -= ZEROS.length) {
+            out.put(ZEROS, 0, Math.min(pad, ZEROS.length));
+        }
+        out.put(bytes, off, len);
+    }
+
+    /**
+     * Read a number of the given group
+     *
+     * Accepts padded and unpadded encodings up to the
+     * length of the group.
+     */
+    public static BigInteger getNumber(ByteBuffer in, SRP6Group group) throws CryptoException {
+        ByteBuffer field = getBytes(in);
+        return toNumber(field, group);
+    }
+
+    /**
+     * Decode the remaining bytes of a slice as a number of the given group
+     *
+     * The position of the slice is not changed.
+     */
+    public static BigInteger toNumber(ByteBuffer slice, SRP6Group group) throws CryptoException {
+        int length = slice.remaining();
+        if(length == 0 || length > group.getLength()) {
+            throw new CryptoException("Invalid number length " + length);
+        }
+        byte[] bytes = new byte[length];
+        slice.duplicate().get(bytes);
+        return new BigInteger(1, bytes);
+    }
+
+    /** Write a byte field */
+    public static void putBytes(ByteBuffer out, byte[] value) {
+        putBytes(out, value, 0, value.length);
+    }
+
+    /**
+     * Write a byte field from part of an array
+     *
+     * @throws IllegalArgumentException if the field is too long
+     */
+    public static void putBytes(ByteBuffer out, byte[] value, int off, int len) {
+        if(len > MAX_LENGTH) {
+            throw new IllegalArgumentException("Field too long: " + len);
+        }
+        if(out.remaining() < 2 + len) {
+            throw new BufferOverflowException();
+        }
+        putLength(out, len);
+        out.put(value, off, len);
+    }
+
+    /**
+     * Read a byte field as a slice of the input
+     *
+     * The slice shares the content of the input and is only
+     * valid as long as the input is not reused. The position
+     * of the input is moved past the field, and left unchanged
+     * if the field is malformed.
+     */
+    public static ByteBuffer getBytes(ByteBuffer in) throws CryptoException {
+        int start = in.position();
+        if(in.remaining() < 2) {
+            throw new CryptoException("Truncated field length");
+        }
+        // big-endian whatever the order of the buffer
+        int length = (in.get(start) & 0xff) << 8 | (in.get(start + 1) & 0xff);
+        if(length > in.remaining() - 2) {
+            throw new CryptoException("Truncated field of length " + length);
+        }
+        in.position(start + 2);
+        ByteBuffer field = in.slice();
+        field.limit(length);
+        in.position(start + 2 + length);
+        return field;
+    }
+
+    /**
+     * Read a byte field into a new array
+     *
+     * For values that must outlive the input, such as the salt.
+     */
+    public static byte[] getByteArray(ByteBuffer in) throws CryptoException {
+        ByteBuffer field = getBytes(in);
+        byte[] bytes = new byte[field.remaining()];
+        field.get(bytes);
+        return bytes;
+    }
+
+    /** Write a field length big-endian, whatever the order of the buffer */
+    private static void putLength(ByteBuffer out, int length) {
+        out.put((byte)(length >>> 8));
+        out.put((byte)length);
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6AsyncServer;
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.CryptoException;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SRP6 asynchronous server test
+ *
+ * This verifies handshakes through the asynchronous facade,
+ * propagation of verification failures and rejection of
+ * steps beyond the pending limit.
+ *
+ */
+public class SRP6AsyncServerTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+
+    byte[] user = "alice".getBytes();
+    byte[] pass = "password123".getBytes();
+    byte[] salt = "0123456789abcdef".getBytes();
+
+    @Test
+    public void testHandshake() throws Exception {
+        SRP6AsyncServer async = new SRP6AsyncServer(2, 4);
+        try {
+            SRP6VerifyingClient client = newClient();
+            SRP6VerifyingServer server = Utils.newServer(params, new SHA1Digest(), salt, user, pass, random);
+            BigInteger A = client.generateClientCredentials(salt, user, pass);
+            BigInteger B = async.generateServerCredentials(server).get();
+            client.calculateSecret(B);
+            byte[] M2 = async.verifyClient(server, A, client.calculateVerifier()).get();
+            client.verifyServer(M2);
+            Assert.assertEquals("Steps still pending", 0, async.getPending());
+        } finally {
+            async.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        SRP6AsyncServer async = new SRP6AsyncServer(1, 1);
+        try {
+            SRP6VerifyingServer server = Utils.newServer(params, new SHA1Digest(), salt, user, pass, random);
+            async.generateServerCredentials(server).get();
+            async.calculateSecret(server, params.N).get();
+            Assert.fail("Invalid credentials accepted");
+        } catch (ExecutionException e) {
+            Assert.assertTrue("Incorrect failure " + e.getCause(), e.getCause() instanceof CryptoException);
+        } finally {
+            async.shutdown();
+        }
+    }
+
+    @Test
+    public void testAdmission() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        SRP6VerifyingServer blocking = Utils.initServer(new SRP6VerifyingServer() {
+            @Override
+            public BigInteger generateServerCredentials() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.generateServerCredentials();
+            }
+        }, params, new SHA1Digest(), salt, user, pass, random);
+        SRP6AsyncServer async = new SRP6AsyncServer(1, 2);
+        try {
+            CompletableFuture<BigInteger> running = async.generateServerCredentials(blocking);
+            started.await();
+            CompletableFuture<BigInteger> queued = async.generateServerCredentials(Utils.newServer(params, new SHA1Digest(), salt, user, pass, random));
+            CompletableFuture<BigInteger> shed = async.generateServerCredentials(Utils.newServer(params, new SHA1Digest(), salt, user, pass, random));
+            Assert.assertEquals("Incorrect pending count", 2, async.getPending());
+            try {
+                shed.get(1, TimeUnit.SECONDS);
+                Assert.fail("Step beyond limit accepted");
+            } catch (ExecutionException e) {
+                Assert.assertTrue("Incorrect failure " + e.getCause(), e.getCause() instanceof RejectedExecutionException);
+            }
+            Assert.assertEquals("Rejection not counted", 1, async.getRejected());
+            release.countDown();
+            Assert.assertNotNull(running.get());
+            Assert.assertNotNull(queued.get());
+        } finally {
+            release.countDown();
+            async.shutdown();
+        }
+    }
+
+    private SRP6VerifyingClient newClient() {
+        SRP6VerifyingClient client = new SRP6VerifyingClient();
+        client.init(params, new SHA1Digest(), random);
+        return client;
+    }
+
+}
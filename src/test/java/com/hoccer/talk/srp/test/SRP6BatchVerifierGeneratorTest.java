@@ -0,0 +1,146 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6BatchVerifierGenerator;
+import com.hoccer.talk.srp.SRP6Parameters;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SRP6 batch verifier generation test
+ *
+ * This verifies that batch generation yields the same
+ * verifiers as the BouncyCastle generator, respects its
+ * bound on records in flight, and fails instead of hanging
+ * on a shut down pool or when called from its own pool.
+ *
+ */
+public class SRP6BatchVerifierGeneratorTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+
+    @Test
+    public void testBatch() throws Exception {
+        List<SRP6BatchVerifierGenerator.Record> records = new ArrayList<SRP6BatchVerifierGenerator.Record>();
+        for(int i = 0; i < 40; i++) {
+            byte[] salt = new byte[16];
+            random.nextBytes(salt);
+            records.add(new SRP6BatchVerifierGenerator.Record(
+                    ("user" + i).getBytes(), ("pass" + i).getBytes(), salt));
+        }
+
+        final int maxInFlight = 3;
+        final Map<SRP6BatchVerifierGenerator.Record, BigInteger> results =
+                new ConcurrentHashMap<SRP6BatchVerifierGenerator.Record, BigInteger>();
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            SRP6BatchVerifierGenerator generator =
+                    new SRP6BatchVerifierGenerator(params, new SHA1Digest(), pool, maxInFlight);
+            int count = generator.generate(records.iterator(), new SRP6BatchVerifierGenerator.Listener() {
+                @Override
+                public void verifierGenerated(SRP6BatchVerifierGenerator.Record record, BigInteger verifier) {
+                    int now = active.incrementAndGet();
+                    peak.set(Math.max(peak.get(), now));
+                    results.put(record, verifier);
+                    active.decrementAndGet();
+                }
+                @Override
+                public void verifierFailed(SRP6BatchVerifierGenerator.Record record, RuntimeException cause) {
+                    Assert.fail("Verifier generation failed: " + cause);
+                }
+            });
+            Assert.assertEquals("Incorrect record count", records.size(), count);
+        } finally {
+            pool.shutdown();
+        }
+
+        Assert.assertEquals("Missing verifiers", records.size(), results.size());
+        Assert.assertTrue("Too many records in flight", peak.get() <= maxInFlight);
+
+        for(SRP6BatchVerifierGenerator.Record record: records) {
+            BigInteger expected = Utils.newVerifier(params, new SHA1Digest(),
+                    record.getSalt(), record.getIdentity(), record.getPassword());
+            Assert.assertEquals("Incorrect verifier", expected, results.get(record));
+        }
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        pool.shutdown();
+        SRP6BatchVerifierGenerator generator = new SRP6BatchVerifierGenerator(params, new SHA1Digest(), pool, 1);
+        try {
+            generator.generate(newRecords(2).iterator(), new CollectingListener());
+            Assert.fail("Shut down pool accepted records");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testOwnPool() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            final SRP6BatchVerifierGenerator generator = new SRP6BatchVerifierGenerator(params, new SHA1Digest(), pool, 1);
+            final List<SRP6BatchVerifierGenerator.Record> records = newRecords(2);
+            Throwable failure = pool.submit(new Callable<Throwable>() {
+                @Override
+                public Throwable call() throws Exception {
+                    try {
+                        generator.generate(records.iterator(), new CollectingListener());
+                        return null;
+                    } catch (IllegalStateException e) {
+                        return e;
+                    }
+                }
+            }).get(10, TimeUnit.SECONDS);
+            Assert.assertNotNull("Generation from its own pool accepted", failure);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private List<SRP6BatchVerifierGenerator.Record> newRecords(int count) {
+        List<SRP6BatchVerifierGenerator.Record> records = new ArrayList<SRP6BatchVerifierGenerator.Record>();
+        for(int i = 0; i < count; i++) {
+            records.add(new SRP6BatchVerifierGenerator.Record(
+                    ("user" + i).getBytes(), ("pass" + i).getBytes(), new byte[16]));
+        }
+        return records;
+    }
+
+    private static class CollectingListener implements SRP6BatchVerifierGenerator.Listener {
+
+        final Map<SRP6BatchVerifierGenerator.Record, BigInteger> results =
+                new ConcurrentHashMap<SRP6BatchVerifierGenerator.Record, BigInteger>();
+
+        @Override
+        public void verifierGenerated(SRP6BatchVerifierGenerator.Record record, BigInteger verifier) {
+            results.put(record, verifier);
+        }
+
+        @Override
+        public void verifierFailed(SRP6BatchVerifierGenerator.Record record, RuntimeException cause) {
+        }
+
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.hoccer.talk.srp.test;
 
 import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6PublicValueCheck;
 import com.hoccer.talk.srp.SRP6VerifyingClient;
 import org.bouncycastle.crypto.CryptoException;
 import org.bouncycastle.crypto.Digest;
@@ -56,4 +57,13 @@ public class SRP6ClientSafeguardsTest {
         c.calculateSecret(params.N.multiply(new BigInteger("2")));
     }
 
+    @Test(expected = CryptoException.class)
+    public void testStrictNMinus1() throws CryptoException {
+        SRP6VerifyingClient c = new SRP6VerifyingClient();
+        c.init(params.N, params.g, digest, random);
+        c.setPublicValueCheck(new SRP6PublicValueCheck(SRP6PublicValueCheck.Policy.STRICT));
+        c.generateClientCredentials(salt, user, pass);
+        c.calculateSecret(params.N.subtract(BigInteger.ONE));
+    }
+
 }
@@ -0,0 +1,144 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6DigestEncoder;
+import com.hoccer.talk.srp.SRP6DigestPrefix;
+import com.hoccer.talk.srp.SRP6Group;
+import com.hoccer.talk.srp.SRP6IdentityHashCache;
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6ServerPool;
+import com.hoccer.talk.srp.SRP6Verification;
+import com.hoccer.talk.srp.SRP6VerifierRecord;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+/**
+ * SRP6 digest prefix test
+ *
+ * This verifies that M1 from a digest prefix or with a cached
+ * H(I) equals the plain calculation, that records keep their
+ * prefix and that prefixes for other accounts are ignored.
+ *
+ */
+public class SRP6DigestPrefixTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+
+    byte[] user = "alice".getBytes();
+    byte[] pass = "password123".getBytes();
+    byte[] salt = "0123456789abcdef".getBytes();
+
+    @Test
+    public void testPrefixM1() {
+        Digest[] digests = new Digest[] { new SHA1Digest(), new SHA256Digest() };
+        for(Digest digest: digests) {
+            SRP6Group group = params.getGroup(digest);
+            SRP6DigestPrefix prefix = new SRP6DigestPrefix(group, digest, user, salt);
+            Assert.assertTrue(prefix.matches(digest, user, salt));
+            Assert.assertFalse(prefix.matches(digest, "bob".getBytes(), salt));
+
+            BigInteger A = new BigInteger(1000, random);
+            BigInteger B = new BigInteger(1000, random);
+            byte[] K = new byte[digest.getDigestSize()];
+            random.nextBytes(K);
+            byte[] refM1 = SRP6Verification.calculateM1(digest, params.N, params.g, user, salt, A, B, K);
+
+            byte[] M1 = new byte[digest.getDigestSize()];
+            SRP6Verification.calculateM1(digest, prefix, A, B, K, new SRP6DigestEncoder(), M1, 0);
+            Assert.assertArrayEquals("Incorrect prefix M1 for " + digest.getAlgorithmName(), refM1, M1);
+
+            // the prefix survives repeated use
+            SRP6Verification.calculateM1(digest, prefix, A, B, K, new SRP6DigestEncoder(), M1, 0);
+            Assert.assertArrayEquals("Prefix modified by use", refM1, M1);
+        }
+    }
+
+    @Test
+    public void testIdentityHashCache() {
+        Digest digest = new SHA256Digest();
+        SRP6IdentityHashCache hashes = new SRP6IdentityHashCache(digest, 2);
+        BigInteger A = new BigInteger(1000, random);
+        BigInteger B = new BigInteger(1000, random);
+        byte[] K = new byte[32];
+        byte[] refM1 = SRP6Verification.calculateM1(digest, params.N, params.g, user, salt, A, B, K);
+        byte[] M1 = new byte[32];
+        for(int i = 0; i < 3; i++) {
+            SRP6Verification.calculateM1(digest, params.getH_Ng(digest), hashes, user, salt, A, B, K,
+                    new SRP6DigestEncoder(), M1, 0);
+            Assert.assertArrayEquals("Incorrect M1 with cached H(I)", refM1, M1);
+        }
+        Assert.assertEquals(1, hashes.getMisses());
+        Assert.assertEquals(2, hashes.getHits());
+
+        hashes.get(digest, "bob".getBytes());
+        hashes.get(digest, "carol".getBytes());
+        Assert.assertEquals("Cache exceeds its size", 2, hashes.size());
+
+        try {
+            hashes.get(new SHA1Digest(), user);
+            Assert.fail("Cache used with a different digest");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRecordPrefix() throws Exception {
+        Digest digest = new SHA256Digest();
+        SRP6VerifierRecord record = new SRP6VerifierRecord(params, user, salt, Utils.newVerifier(params, digest, salt, user, pass));
+        SRP6Group group = params.getGroup(digest);
+        SRP6DigestPrefix prefix = record.getDigestPrefix(group, digest);
+        Assert.assertSame("Prefix not kept with record", prefix, record.getDigestPrefix(group, new SHA256Digest()));
+
+        SRP6VerifyingServer server = new SRP6VerifyingServer();
+        server.initVerifiable(record, new SHA256Digest(), random);
+        handshake(server, digest);
+
+        SRP6ServerPool pool = new SRP6ServerPool(params, digest, random, 2);
+        pool.setIdentityHashCache(new SRP6IdentityHashCache(digest, 16));
+        SRP6VerifyingServer pooled = pool.acquire(record);
+        handshake(pooled, digest);
+        pool.release(pooled);
+    }
+
+    @Test
+    public void testForeignPrefix() throws Exception {
+        Digest digest = new SHA256Digest();
+        BigInteger verifier = Utils.newVerifier(params, digest, salt, user, pass);
+
+        // a prefix of another account must not be used
+        SRP6VerifyingServer server = new SRP6VerifyingServer();
+        server.initVerifiable(params, verifier, user, salt, digest, random);
+        server.setDigestPrefix(new SRP6DigestPrefix(params.getGroup(digest), new SHA256Digest(), "bob".getBytes(), salt));
+        handshake(server, digest);
+
+        // nor a prefix or a cache for another digest
+        server = new SRP6VerifyingServer();
+        server.initVerifiable(params, verifier, user, salt, digest, random);
+        server.setDigestPrefix(new SRP6DigestPrefix(params.getGroup(new SHA1Digest()), new SHA1Digest(), user, salt));
+        server.setIdentityHashCache(new SRP6IdentityHashCache(new SHA1Digest(), 16));
+        handshake(server, digest);
+    }
+
+    private void handshake(SRP6VerifyingServer server, Digest digest) throws Exception {
+        SRP6VerifyingClient client = new SRP6VerifyingClient();
+        client.init(params, new SHA256Digest(), random);
+        client.setDigestPrefix(new SRP6DigestPrefix(params.getGroup(digest), new SHA256Digest(), user, salt));
+
+        BigInteger A = client.generateClientCredentials(salt, user, pass);
+        BigInteger B = server.generateServerCredentials();
+        Assert.assertEquals("clientSecret != serverSecret", server.calculateSecret(A), client.calculateSecret(B));
+        client.verifyServer(server.verifyClient(client.calculateVerifier()));
+    }
+
+}
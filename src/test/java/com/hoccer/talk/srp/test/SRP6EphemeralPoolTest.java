@@ -0,0 +1,90 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6EphemeralPool;
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * SRP6 ephemeral pool test
+ *
+ * This verifies handshakes with pooled ephemerals, single use
+ * of every pair, the pool counters and the background refill.
+ *
+ */
+public class SRP6EphemeralPoolTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+
+    byte[] user = "alice".getBytes();
+    byte[] pass = "password123".getBytes();
+    byte[] salt = "0123456789abcdef".getBytes();
+
+    @Test
+    public void testHandshake() throws Exception {
+        SRP6EphemeralPool pool = new SRP6EphemeralPool(params, random, 4);
+        Assert.assertEquals(4, pool.fill(8));
+        Assert.assertEquals(4, pool.getDepth());
+
+        Set<BigInteger> seen = new HashSet<BigInteger>();
+        for(int i = 0; i < 5; i++) {
+            SRP6VerifyingClient client = new SRP6VerifyingClient();
+            client.init(params, new SHA256Digest(), random);
+            SRP6VerifyingServer server = Utils.newServer(params, new SHA256Digest(), salt, user, pass, random);
+            server.setEphemeralPool(pool);
+
+            BigInteger A = client.generateClientCredentials(salt, user, pass);
+            BigInteger B = server.generateServerCredentials();
+            Assert.assertTrue("Ephemeral reused", seen.add(B));
+            client.calculateSecret(B);
+            server.calculateSecret(A);
+            client.verifyServer(server.verifyClient(client.calculateVerifier()));
+        }
+
+        Assert.assertEquals("Incorrect hit count", 4, pool.getHits());
+        Assert.assertEquals("Incorrect miss count", 1, pool.getMisses());
+        Assert.assertEquals(0, pool.getDepth());
+    }
+
+    @Test
+    public void testOtherGroup() {
+        SRP6EphemeralPool pool = new SRP6EphemeralPool(SRP6Parameters.CONSTANTS_2048, random, 1);
+        pool.fill(1);
+        SRP6VerifyingServer server = Utils.newServer(params, new SHA256Digest(), salt, user, pass, random);
+        server.setEphemeralPool(pool);
+        server.generateServerCredentials();
+        Assert.assertEquals("Pool of other group used", 1, pool.getDepth());
+    }
+
+    @Test
+    public void testRefill() throws Exception {
+        SRP6EphemeralPool pool = new SRP6EphemeralPool(params, random, 16);
+        pool.start();
+        try {
+            // may hit or miss, depending on how fast the refill thread starts
+            pool.take();
+            long deadline = System.currentTimeMillis() + 10000;
+            while(pool.getDepth() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue("Pool not refilled", pool.getDepth() > 0);
+            Assert.assertNotNull(pool.take());
+        } finally {
+            pool.close();
+        }
+        Assert.assertEquals("Pairs left after close", 0, pool.getDepth());
+        Assert.assertTrue(pool.getGenerated() > 0);
+    }
+
+}
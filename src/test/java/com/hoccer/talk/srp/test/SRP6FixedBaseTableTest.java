@@ -0,0 +1,77 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6FixedBaseTable;
+import com.hoccer.talk.srp.SRP6Parameters;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+/**
+ * Fixed-base table test
+ *
+ * This verifies that the comb exponentiation used for
+ * the generator yields the same results as the generic
+ * modular exponentiation for all standard groups.
+ *
+ */
+public class SRP6FixedBaseTableTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    @Test
+    public void testStandardGroups() {
+        test(SRP6Parameters.CONSTANTS_1024);
+        test(SRP6Parameters.CONSTANTS_2048);
+        test(SRP6Parameters.CONSTANTS_4096);
+        test(SRP6Parameters.CONSTANTS_8192);
+    }
+
+    @Test
+    public void testEdgeExponents() {
+        SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+        SRP6FixedBaseTable table = params.getGeneratorTable();
+        BigInteger N = params.N;
+        check(table, BigInteger.ZERO);
+        check(table, BigInteger.ONE);
+        check(table, N.subtract(BigInteger.ONE));
+        check(table, BigInteger.ONE.shiftLeft(N.bitLength()).subtract(BigInteger.ONE));
+        // exponents beyond the table range fall back to modPow
+        check(table, N.multiply(N).add(BigInteger.TEN));
+    }
+
+    @Test
+    public void testTableShapes() {
+        SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+        for(int teeth = 1; teeth <= 9; teeth++) {
+            for(int blocks = 1; blocks <= 5; blocks++) {
+                SRP6FixedBaseTable table = new SRP6FixedBaseTable(
+                        params.getMontgomery(), params.g, params.N.bitLength(), teeth, blocks);
+                check(table, new BigInteger(params.N.bitLength(), random));
+            }
+        }
+    }
+
+    @Test
+    public void testTableIsShared() {
+        SRP6Parameters params = SRP6Parameters.CONSTANTS_2048;
+        Assert.assertSame("Table rebuilt", params.getGeneratorTable(), params.getGeneratorTable());
+    }
+
+    private void test(SRP6Parameters params) {
+        SRP6FixedBaseTable table = params.getGeneratorTable();
+        for(int i = 0; i < 8; i++) {
+            check(table, new BigInteger(params.N.bitLength(), random));
+        }
+        // short exponents as used for verifiers
+        check(table, new BigInteger(160, random));
+    }
+
+    private void check(SRP6FixedBaseTable table, BigInteger exponent) {
+        BigInteger expected = table.getBase().modPow(exponent, table.getModulus());
+        Assert.assertEquals("Incorrect power for " + exponent.toString(16), expected, table.pow(exponent));
+    }
+
+}
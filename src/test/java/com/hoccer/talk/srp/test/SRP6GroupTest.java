@@ -0,0 +1,82 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6Group;
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6Verification;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.agreement.srp.SRP6Util;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+/**
+ * SRP6 group constants test
+ *
+ * This verifies the memoized per-group constants and
+ * a handshake using them on both sides.
+ *
+ */
+public class SRP6GroupTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    @Test
+    public void testConstants() {
+        check(new SHA1Digest(), SRP6Parameters.CONSTANTS_1024);
+        check(new SHA256Digest(), SRP6Parameters.CONSTANTS_2048);
+        check(new SHA256Digest(), SRP6Parameters.CONSTANTS_8192);
+    }
+
+    @Test
+    public void testMemoization() {
+        SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+        SRP6Group sha1 = params.getGroup(new SHA1Digest());
+        SRP6Group sha256 = params.getGroup(new SHA256Digest());
+        Assert.assertSame("Group constants not shared", sha1, params.getGroup(new SHA1Digest()));
+        Assert.assertNotSame("Group constants shared between digests", sha1, sha256);
+        Assert.assertNotEquals("Same k for different digests", sha1.getK(), sha256.getK());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDigestMismatch() {
+        SRP6Group group = SRP6Parameters.CONSTANTS_1024.getGroup(new SHA1Digest());
+        new SRP6VerifyingClient().init(group, new SHA256Digest(), random);
+    }
+
+    @Test
+    public void testHandshake() throws Exception {
+        Digest digest = new SHA256Digest();
+        SRP6Group group = SRP6Parameters.CONSTANTS_2048.getGroup(digest);
+        byte[] user = "alice".getBytes();
+        byte[] pass = "password123".getBytes();
+        byte[] salt = Utils.newSalt(random, digest.getDigestSize());
+        BigInteger verifier = Utils.newVerifier(group.getParameters(), digest, salt, user, pass);
+
+        SRP6VerifyingClient client = new SRP6VerifyingClient();
+        SRP6VerifyingServer server = new SRP6VerifyingServer();
+        client.init(group, digest, random);
+        server.initVerifiable(group, verifier, user, salt, digest, random);
+
+        BigInteger A = client.generateClientCredentials(salt, user, pass);
+        BigInteger B = server.generateServerCredentials();
+        Assert.assertEquals("clientSecret != serverSecret", server.calculateSecret(A), client.calculateSecret(B));
+        client.verifyServer(server.verifyClient(client.calculateVerifier()));
+    }
+
+    private void check(Digest digest, SRP6Parameters params) {
+        SRP6Group group = params.getGroup(digest);
+        Assert.assertEquals("Incorrect digest", digest.getAlgorithmName(), group.getDigestAlgorithm());
+        Assert.assertEquals("Incorrect k", SRP6Util.calculateK(digest, params.N, params.g), group.getK());
+        Assert.assertArrayEquals("Incorrect H_Ng",
+                SRP6Verification.calculateH_Ng(digest, params.N, params.g), group.getH_Ng());
+        Assert.assertEquals("Incorrect length", params.N.toByteArray().length - 1, group.getLength());
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6LoginThrottle;
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6ServerPool;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.CryptoException;
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SRP6 login throttle test
+ *
+ * This verifies the burst and refill of the per-identity and
+ * global limits on a manual clock, that identities do not
+ * throttle each other, that failed logins of pooled servers are
+ * charged and that concurrent attempts are not over-admitted.
+ *
+ */
+public class SRP6LoginThrottleTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    Digest digest = new SHA256Digest();
+    SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+
+    byte[] user = "alice".getBytes();
+    byte[] pass = "password123".getBytes();
+    byte[] salt = "0123456789abcdef".getBytes();
+
+    // manual clock in nanoseconds
+    long clock = 1000;
+
+    @Test
+    public void testBurstAndRefill() {
+        SRP6LoginThrottle throttle = newThrottle(3, 1000);
+        for(int i = 0; i < 3; i++) {
+            Assert.assertTrue("Burst attempt rejected", throttle.tryAcquire(user));
+        }
+        Assert.assertFalse("Attempt beyond burst admitted", throttle.tryAcquire(user));
+        Assert.assertEquals(1, throttle.getRejected());
+
+        clock += 1000;
+        Assert.assertTrue("Attempt not refilled", throttle.tryAcquire(user));
+        Assert.assertFalse(throttle.tryAcquire(user));
+        Assert.assertEquals(4, throttle.getAdmitted());
+    }
+
+    @Test
+    public void testIndependentIdentities() {
+        SRP6LoginThrottle throttle = newThrottle(1, 1000000);
+        Assert.assertTrue(throttle.tryAcquire(user));
+        Assert.assertFalse(throttle.tryAcquire(user));
+        int admitted = 0;
+        for(int i = 0; i < 1000; i++) {
+            if(throttle.tryAcquire(("user" + i).getBytes())) {
+                admitted++;
+            }
+        }
+        // with four rows of 16384 cells an identity rarely loses all of its cells
+        Assert.assertTrue("Identities throttle each other: " + admitted, admitted >= 995);
+    }
+
+    @Test
+    public void testGlobalLimit() {
+        SRP6LoginThrottle throttle = newThrottle(10, 1000);
+        throttle.setGlobalLimit(2, 100, TimeUnit.NANOSECONDS);
+        Assert.assertTrue(throttle.tryAcquire("a".getBytes()));
+        Assert.assertTrue(throttle.tryAcquire("b".getBytes()));
+        Assert.assertFalse("Global limit not applied", throttle.tryAcquire("c".getBytes()));
+        Assert.assertEquals(1, throttle.getRejectedGlobal());
+        clock += 100;
+        Assert.assertTrue(throttle.tryAcquire("c".getBytes()));
+
+        throttle.setGlobalLimit(1, 0, TimeUnit.NANOSECONDS);
+        Assert.assertTrue("Global limit not removed", throttle.tryAcquire("d".getBytes()));
+    }
+
+    @Test
+    public void testFailurePenalty() {
+        SRP6LoginThrottle throttle = newThrottle(3, 1000);
+        throttle.setFailurePenalty(2);
+        Assert.assertTrue(throttle.tryAcquire(user));
+        throttle.reportFailure(user);
+        Assert.assertFalse("Failure not charged", throttle.tryAcquire(user));
+        clock += 1000;
+        Assert.assertTrue(throttle.tryAcquire(user));
+        Assert.assertEquals(1, throttle.getFailures());
+    }
+
+    @Test
+    public void testServerFailures() throws Exception {
+        SRP6LoginThrottle throttle = newThrottle(2, 1000000);
+        SRP6ServerPool pool = new SRP6ServerPool(params, digest, random, 2);
+        pool.setLoginThrottle(throttle);
+        BigInteger verifier = Utils.newVerifier(params, digest, salt, user, pass);
+
+        Assert.assertTrue(throttle.tryAcquire(user));
+        SRP6VerifyingServer server = pool.acquire(verifier, user, salt);
+        SRP6VerifyingClient client = new SRP6VerifyingClient();
+        client.init(params, new SHA256Digest(), random);
+        BigInteger A = client.generateClientCredentials(salt, user, "wrong".getBytes());
+        server.generateServerCredentials();
+        server.calculateSecret(A);
+        try {
+            server.verifyClient(new byte[32]);
+            Assert.fail("Wrong verifier accepted");
+        } catch (CryptoException e) {
+            // expected
+        }
+        pool.release(server);
+        Assert.assertEquals(1, throttle.getFailures());
+        Assert.assertFalse("Server failure not charged", throttle.tryAcquire(user));
+    }
+
+    @Test
+    public void testConcurrentAttempts() throws Exception {
+        final SRP6LoginThrottle throttle = new SRP6LoginThrottle(1 << 12, 50, 1, TimeUnit.HOURS);
+        final AtomicInteger admitted = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for(int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for(int i = 0; i < 1000; i++) {
+                        if(throttle.tryAcquire(user)) {
+                            admitted.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for(Thread thread: threads) {
+            thread.join();
+        }
+        Assert.assertEquals("Concurrent attempts over-admitted", 50, admitted.get());
+    }
+
+    private SRP6LoginThrottle newThrottle(int burst, long interval) {
+        return new SRP6LoginThrottle(1 << 16, burst, interval, TimeUnit.NANOSECONDS) {
+            @Override
+            protected long now() {
+                return clock;
+            }
+        };
+    }
+
+}
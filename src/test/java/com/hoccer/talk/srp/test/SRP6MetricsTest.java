@@ -0,0 +1,129 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6Group;
+import com.hoccer.talk.srp.SRP6Histogram;
+import com.hoccer.talk.srp.SRP6HistogramMetrics;
+import com.hoccer.talk.srp.SRP6Metrics;
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.CryptoException;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Map;
+
+/**
+ * SRP6 metrics test
+ *
+ * This verifies that handshake phases and failures are
+ * reported, that groups are recorded separately and checks
+ * the histogram buckets.
+ *
+ */
+public class SRP6MetricsTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+
+    byte[] user = "alice".getBytes();
+    byte[] pass = "password123".getBytes();
+    byte[] salt = "0123456789abcdef".getBytes();
+
+    @Test
+    public void testPhases() throws Exception {
+        SRP6HistogramMetrics metrics = new SRP6HistogramMetrics();
+        SRP6VerifyingClient client = new SRP6VerifyingClient();
+        client.init(params, new SHA1Digest(), random);
+        client.setMetrics(metrics);
+        SRP6VerifyingServer server = Utils.newServer(params, new SHA1Digest(), salt, user, pass, random);
+        server.setMetrics(metrics);
+
+        BigInteger A = client.generateClientCredentials(salt, user, pass);
+        BigInteger B = server.generateServerCredentials();
+        client.calculateSecret(B);
+        server.calculateSecret(A);
+        client.verifyServer(server.verifyClient(client.calculateVerifier()));
+
+        for(SRP6Metrics.Role role: SRP6Metrics.Role.values()) {
+            for(SRP6Metrics.Phase phase: SRP6Metrics.Phase.values()) {
+                SRP6Histogram histogram = metrics.getHistogram(role, phase, params.getGroup(new SHA1Digest()));
+                Assert.assertEquals("Phase not reported: " + role + " " + phase, 1, histogram.getCount());
+                Assert.assertTrue(histogram.getTotal() > 0);
+            }
+        }
+        Assert.assertTrue(metrics.getFailures().isEmpty());
+    }
+
+    @Test
+    public void testFailures() throws Exception {
+        SRP6HistogramMetrics metrics = new SRP6HistogramMetrics();
+        SRP6VerifyingServer server = Utils.newServer(params, new SHA1Digest(), salt, user, pass, random);
+        server.setMetrics(metrics);
+        server.generateServerCredentials();
+        try {
+            server.calculateSecret(params.N);
+            Assert.fail("Invalid credentials accepted");
+        } catch (CryptoException e) {
+            // expected
+        }
+        server.calculateSecret(params.g);
+        try {
+            server.verifyClient(new byte[20]);
+            Assert.fail("Incorrect verifier accepted");
+        } catch (CryptoException e) {
+            // expected
+        }
+        Map<String, Long> failures = metrics.getFailures();
+        Assert.assertEquals(2, failures.size());
+        Assert.assertEquals(Long.valueOf(1), failures.get("SERVER M1 1024 SHA-1: Incorrect client M1"));
+    }
+
+    @Test
+    public void testGroups() {
+        SRP6HistogramMetrics metrics = new SRP6HistogramMetrics(2);
+        SRP6Group small = params.getGroup(new SHA1Digest());
+        SRP6Group large = SRP6Parameters.CONSTANTS_2048.getGroup(new SHA1Digest());
+        SRP6Group other = SRP6Parameters.CONSTANTS_2048.getGroup(new SHA256Digest());
+        metrics.phaseCompleted(SRP6Metrics.Role.SERVER, SRP6Metrics.Phase.SECRET, small, 1000);
+        metrics.phaseCompleted(SRP6Metrics.Role.SERVER, SRP6Metrics.Phase.SECRET, large, 8000);
+        metrics.phaseCompleted(SRP6Metrics.Role.SERVER, SRP6Metrics.Phase.SECRET, large, 8000);
+        metrics.phaseCompleted(SRP6Metrics.Role.SERVER, SRP6Metrics.Phase.SECRET, other, 9000);
+
+        SRP6Histogram histogram = metrics.getHistogram(SRP6Metrics.Role.SERVER, SRP6Metrics.Phase.SECRET, small);
+        Assert.assertEquals("Groups mixed", 1, histogram.getCount());
+        histogram = metrics.getHistogram(SRP6Metrics.Role.SERVER, SRP6Metrics.Phase.SECRET, large);
+        Assert.assertEquals(2, histogram.getCount());
+        Assert.assertNull("Group beyond the table tracked", metrics.getHistogram(SRP6Metrics.Role.SERVER, SRP6Metrics.Phase.SECRET, other));
+        Assert.assertNull("Histogram created before its first value", metrics.getHistogram(SRP6Metrics.Role.CLIENT, SRP6Metrics.Phase.SECRET, small));
+
+        Map<String, SRP6Histogram> histograms = metrics.getHistograms();
+        Assert.assertEquals(3, histograms.size());
+        Assert.assertEquals(2, histograms.get("SERVER SECRET 2048 SHA-1").getCount());
+        Assert.assertEquals(1, histograms.get("SERVER SECRET other").getCount());
+    }
+
+    @Test
+    public void testHistogram() {
+        SRP6Histogram histogram = new SRP6Histogram(4);
+        for(int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(500500000L, histogram.getTotal());
+        long median = histogram.getPercentile(50);
+        Assert.assertTrue("Median out of range: " + median, median >= 500000 && median <= 500000 * 9 / 8);
+        long max = histogram.getPercentile(100);
+        Assert.assertTrue("Maximum out of range: " + max, max >= 1000000 && max <= 1000000 * 9 / 8);
+        Assert.assertEquals(0, new SRP6Histogram().getPercentile(99));
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+    }
+
+}
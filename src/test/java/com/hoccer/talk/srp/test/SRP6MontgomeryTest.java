@@ -0,0 +1,126 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6Montgomery;
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6Residue;
+import org.bouncycastle.crypto.agreement.srp.SRP6Util;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+/**
+ * Montgomery engine test
+ *
+ * This verifies the Montgomery arithmetic engine against
+ * plain BigInteger arithmetic and recomputes the public
+ * values and the premaster secret of the RFC5054 vector.
+ *
+ */
+public class SRP6MontgomeryTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    @Test
+    public void testArithmetic() {
+        test(SRP6Parameters.CONSTANTS_1024);
+        test(SRP6Parameters.CONSTANTS_2048);
+        test(SRP6Parameters.CONSTANTS_4096);
+        test(SRP6Parameters.CONSTANTS_8192);
+    }
+
+    @Test
+    public void testExponentiation() {
+        SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+        SRP6Montgomery engine = params.getMontgomery();
+        SRP6Montgomery.Workspace ws = engine.newWorkspace();
+        SRP6Residue x = new SRP6Residue(engine);
+        BigInteger base = new BigInteger(params.N.bitLength() - 1, random);
+        // every window size and a few edge cases
+        for(int bits = 0; bits <= 1024; bits += 7) {
+            BigInteger exponent = new BigInteger(bits, random);
+            Assert.assertEquals("Incorrect power", base.modPow(exponent, params.N),
+                    x.set(base, ws).pow(exponent, ws).toBigInteger(ws));
+        }
+        Assert.assertEquals("Incorrect power of zero", BigInteger.ZERO,
+                x.set(BigInteger.ZERO, ws).pow(BigInteger.TEN, ws).toBigInteger(ws));
+        Assert.assertEquals("Incorrect zero power", BigInteger.ONE,
+                x.set(base, ws).pow(BigInteger.ZERO, ws).toBigInteger(ws));
+    }
+
+    @Test
+    public void testRfc5054Vector() {
+        SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+        SRP6Montgomery engine = params.getMontgomery();
+        SRP6Montgomery.Workspace ws = engine.newWorkspace();
+
+        BigInteger v = new BigInteger(SRP6Rfc5054Test.verifier_HEX, 16);
+        BigInteger a = new BigInteger(SRP6Rfc5054Test.a_HEX, 16);
+        BigInteger b = new BigInteger(SRP6Rfc5054Test.b_HEX, 16);
+        BigInteger k = SRP6Util.calculateK(SRP6Rfc5054Test.digest, params.N, params.g);
+
+        // A = g^a
+        BigInteger A = params.getGeneratorTable().pow(a, ws);
+        Assert.assertEquals("Incorrect client credentials", new BigInteger(SRP6Rfc5054Test.A_HEX, 16), A);
+
+        // B = k*v + g^b
+        long[] kv = engine.newElement();
+        long[] gb = engine.newElement();
+        engine.toMontgomery(k, kv, ws);
+        engine.toMontgomery(v, gb, ws);
+        engine.multiply(kv, gb, kv, ws);
+        params.getGeneratorTable().powMontgomery(b, gb, ws);
+        engine.add(kv, gb, kv, ws);
+        BigInteger B = engine.fromMontgomery(kv, ws);
+        Assert.assertEquals("Incorrect server credentials", new BigInteger(SRP6Rfc5054Test.B_HEX, 16), B);
+
+        BigInteger u = SRP6Util.calculateU(SRP6Rfc5054Test.digest, params.N, A, B);
+        BigInteger refS = new BigInteger(SRP6Rfc5054Test.S_HEX, 16);
+
+        // server S = (A * v^u)^b
+        SRP6Residue base = new SRP6Residue(engine);
+        SRP6Residue mix = new SRP6Residue(engine);
+        mix.set(v, ws).pow(u, ws);
+        base.set(A, ws).multiply(mix, ws).pow(b, ws);
+        Assert.assertEquals("Server has computed incorrect secret", refS, base.toBigInteger(ws));
+
+        // client S = (B - k*g^x)^(a + u*x)
+        BigInteger x = SRP6Util.calculateX(SRP6Rfc5054Test.digest, params.N,
+                Utils.fromHexString(SRP6Rfc5054Test.salt_HEX),
+                SRP6Rfc5054Test.user_RAW.getBytes(), SRP6Rfc5054Test.pass_RAW.getBytes());
+        SRP6Residue kgx = new SRP6Residue(engine).set(k, ws);
+        kgx.multiply(mix.setPower(params.getGeneratorTable(), x, ws), ws);
+        base.set(B, ws).subtract(kgx).pow(u.multiply(x).add(a), ws);
+        Assert.assertEquals("Client has computed incorrect secret", refS, base.toBigInteger(ws));
+    }
+
+    private void test(SRP6Parameters params) {
+        BigInteger N = params.N;
+        SRP6Montgomery engine = params.getMontgomery();
+        SRP6Montgomery.Workspace ws = engine.newWorkspace();
+        long[] x = engine.newElement();
+        long[] y = engine.newElement();
+        BigInteger[] edges = {
+                BigInteger.ZERO, BigInteger.ONE, N.subtract(BigInteger.ONE)
+        };
+        for(int i = 0; i < 16; i++) {
+            BigInteger a = (i < edges.length) ? edges[i] : new BigInteger(N.bitLength(), random).mod(N);
+            BigInteger b = (i + 1 < edges.length) ? edges[i + 1] : new BigInteger(N.bitLength(), random).mod(N);
+
+            engine.toMontgomery(a, x, ws);
+            Assert.assertEquals("Incorrect round trip", a, engine.fromMontgomery(x, ws));
+            engine.toMontgomery(b, y, ws);
+
+            long[] out = engine.newElement();
+            engine.multiply(x, y, out, ws);
+            Assert.assertEquals("Incorrect product", a.multiply(b).mod(N), engine.fromMontgomery(out, ws));
+            engine.add(x, y, out, ws);
+            Assert.assertEquals("Incorrect sum", a.add(b).mod(N), engine.fromMontgomery(out, ws));
+            engine.subtract(x, y, out);
+            Assert.assertEquals("Incorrect difference", a.subtract(b).mod(N), engine.fromMontgomery(out, ws));
+        }
+    }
+
+}
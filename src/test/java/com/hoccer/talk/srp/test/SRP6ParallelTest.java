@@ -0,0 +1,84 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6FixedBaseTable;
+import com.hoccer.talk.srp.SRP6Montgomery;
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * SRP6 parallel exponentiation test
+ *
+ * This verifies that the parallel comb agrees with the
+ * sequential one and that handshakes in parallel mode
+ * interoperate with sequential peers.
+ *
+ */
+public class SRP6ParallelTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    // private copy of a standard group, so the mode does not leak into other tests
+    SRP6Parameters params = new SRP6Parameters(SRP6Parameters.CONSTANTS_2048.N, SRP6Parameters.CONSTANTS_2048.g);
+
+    ForkJoinPool pool;
+
+    byte[] user = "alice".getBytes();
+    byte[] pass = "password123".getBytes();
+    byte[] salt = "0123456789abcdef".getBytes();
+
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(3);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testComb() {
+        SRP6Montgomery engine = params.getMontgomery();
+        SRP6Montgomery.Workspace ws = engine.newWorkspace();
+        SRP6FixedBaseTable table = new SRP6FixedBaseTable(engine, params.g, params.N.bitLength(), 5, 3);
+        for(int i = 0; i < 8; i++) {
+            BigInteger e = new BigInteger(params.N.bitLength() - 8 * i, random);
+            Assert.assertEquals("Incorrect parallel power", params.g.modPow(e, params.N), table.pow(e, ws, pool));
+        }
+        Assert.assertEquals(BigInteger.ONE, table.pow(BigInteger.ZERO, ws, pool));
+    }
+
+    @Test
+    public void testHandshake() throws Exception {
+        BigInteger verifier = Utils.newVerifier(params, new SHA256Digest(), salt, user, pass);
+
+        for(int round = 0; round < 3; round++) {
+            // parallel client and server, then each side alone
+            params.setParallelPool(pool);
+            SRP6VerifyingClient client = new SRP6VerifyingClient();
+            client.init(params, new SHA256Digest(), random);
+            BigInteger A = client.generateClientCredentials(salt, user, pass);
+            params.setParallelPool(round == 1 ? null : pool);
+            SRP6VerifyingServer server = new SRP6VerifyingServer();
+            server.initVerifiable(params, verifier, user, salt, new SHA256Digest(), random);
+            BigInteger B = server.generateServerCredentials();
+            params.setParallelPool(round == 2 ? null : pool);
+            client.calculateSecret(B);
+            server.calculateSecret(A);
+            client.verifyServer(server.verifyClient(client.calculateVerifier()));
+        }
+        params.setParallelPool(null);
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6RandomSource;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SRP6 random source test
+ *
+ * This verifies that handshakes fall back to the default source,
+ * that every thread gets its own generator and that generators
+ * are reseeded by drawn bytes and by time.
+ *
+ */
+public class SRP6RandomSourceTest {
+
+    SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+
+    byte[] user = "alice".getBytes();
+    byte[] pass = "password123".getBytes();
+    byte[] salt = "0123456789abcdef".getBytes();
+
+    @Test
+    public void testDefaultSource() throws Exception {
+        long drawn = SRP6RandomSource.getDefault().getBytesDrawn();
+        SRP6VerifyingClient client = new SRP6VerifyingClient();
+        client.init(params, new SHA256Digest(), null);
+        SRP6VerifyingServer server = Utils.newServer(params, new SHA256Digest(), salt, user, pass, null);
+
+        BigInteger A = client.generateClientCredentials(salt, user, pass);
+        BigInteger B = server.generateServerCredentials();
+        Assert.assertEquals("clientSecret != serverSecret", server.calculateSecret(A), client.calculateSecret(B));
+        client.verifyServer(server.verifyClient(client.calculateVerifier()));
+        Assert.assertTrue("Default source not used", SRP6RandomSource.getDefault().getBytesDrawn() > drawn);
+    }
+
+    @Test
+    public void testReseedByBytes() {
+        SRP6RandomSource source = new SRP6RandomSource(new SecureRandom(), 64, 1, TimeUnit.DAYS);
+        SecureRandom random = source.getSecureRandom();
+        byte[] bytes = new byte[32];
+        for(int i = 0; i < 10; i++) {
+            random.nextBytes(bytes);
+        }
+        Assert.assertEquals(320, source.getBytesDrawn());
+        Assert.assertEquals(4, source.getReseeds());
+        Assert.assertEquals(1, source.getInstantiations());
+    }
+
+    @Test
+    public void testReseedByTime() throws Exception {
+        SRP6RandomSource source = new SRP6RandomSource(new SecureRandom(), Long.MAX_VALUE, 1, TimeUnit.MILLISECONDS);
+        SecureRandom random = source.getSecureRandom();
+        random.nextBytes(new byte[16]);
+        Thread.sleep(5);
+        random.nextBytes(new byte[16]);
+        Assert.assertTrue("Generator not reseeded", source.getReseeds() >= 1);
+    }
+
+    @Test
+    public void testPerThread() throws Exception {
+        final SRP6RandomSource source = new SRP6RandomSource();
+        final SecureRandom random = source.getSecureRandom();
+        final Set<String> outputs = Collections.synchronizedSet(new HashSet<String>());
+        Thread[] threads = new Thread[4];
+        for(int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for(int i = 0; i < 8; i++) {
+                        byte[] bytes = new byte[16];
+                        random.nextBytes(bytes);
+                        outputs.add(Hex.toHexString(bytes));
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for(Thread thread: threads) {
+            thread.join();
+        }
+        Assert.assertEquals("Not one generator per thread", 4, source.getInstantiations());
+        Assert.assertEquals("Repeated output", 32, outputs.size());
+        Assert.assertEquals(32 * 16, source.getBytesDrawn());
+    }
+
+}
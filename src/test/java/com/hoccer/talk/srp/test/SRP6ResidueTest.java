@@ -0,0 +1,78 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6Montgomery;
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6Residue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+/**
+ * SRP6 residue test
+ *
+ * This verifies in-place residue arithmetic, including the
+ * dedicated squaring, against BigInteger for all groups.
+ *
+ */
+public class SRP6ResidueTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    @Test
+    public void testArithmetic() {
+        SRP6Parameters[] groups = {
+                SRP6Parameters.CONSTANTS_1024, SRP6Parameters.CONSTANTS_2048,
+                SRP6Parameters.CONSTANTS_4096, SRP6Parameters.CONSTANTS_8192
+        };
+        for(SRP6Parameters params: groups) {
+            test(params.N);
+        }
+    }
+
+    @Test
+    public void testSquareEdgeCases() {
+        BigInteger N = SRP6Parameters.CONSTANTS_2048.N;
+        BigInteger[] values = {
+                BigInteger.ZERO, BigInteger.ONE, N.subtract(BigInteger.ONE),
+                BigInteger.ONE.shiftLeft(N.bitLength() - 1), BigInteger.ONE.shiftLeft(32).subtract(BigInteger.ONE)
+        };
+        SRP6Montgomery engine = new SRP6Montgomery(N);
+        SRP6Montgomery.Workspace ws = engine.newWorkspace();
+        SRP6Residue x = new SRP6Residue(engine);
+        for(BigInteger value: values) {
+            Assert.assertEquals("Incorrect square of " + value,
+                    value.multiply(value).mod(N), x.set(value, ws).square(ws).toBigInteger(ws));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMixedGroups() {
+        SRP6Montgomery.Workspace ws = SRP6Parameters.CONSTANTS_1024.getMontgomery().newWorkspace();
+        new SRP6Residue(SRP6Parameters.CONSTANTS_1024.getMontgomery())
+                .multiply(new SRP6Residue(SRP6Parameters.CONSTANTS_2048.getMontgomery()), ws);
+    }
+
+    private void test(BigInteger N) {
+        SRP6Montgomery engine = new SRP6Montgomery(N);
+        SRP6Montgomery.Workspace ws = engine.newWorkspace();
+        SRP6Residue x = new SRP6Residue(engine);
+        SRP6Residue y = new SRP6Residue(engine);
+        for(int i = 0; i < 4; i++) {
+            BigInteger a = new BigInteger(N.bitLength(), random).mod(N);
+            BigInteger b = new BigInteger(N.bitLength(), random).mod(N);
+            Assert.assertEquals("Incorrect conversion", a, x.set(a, ws).toBigInteger(ws));
+            Assert.assertEquals("Incorrect square", a.multiply(a).mod(N), x.set(a, ws).square(ws).toBigInteger(ws));
+            Assert.assertEquals("Incorrect product", a.multiply(b).mod(N),
+                    x.set(a, ws).multiply(y.set(b, ws), ws).toBigInteger(ws));
+            Assert.assertEquals("Incorrect sum", a.add(b).mod(N), x.set(a, ws).add(y, ws).toBigInteger(ws));
+            Assert.assertEquals("Incorrect difference", a.subtract(b).mod(N), x.set(a, ws).subtract(y).toBigInteger(ws));
+            BigInteger e = new BigInteger(64, random);
+            Assert.assertEquals("Incorrect power", a.modPow(e, N), x.set(a, ws).pow(e, ws).toBigInteger(ws));
+            Assert.assertEquals("Incorrect copy", b, x.set(y).toBigInteger(ws));
+        }
+    }
+
+}
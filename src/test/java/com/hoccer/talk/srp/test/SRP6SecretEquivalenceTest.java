@@ -0,0 +1,98 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.agreement.srp.SRP6Client;
+import org.bouncycastle.crypto.agreement.srp.SRP6Server;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+/**
+ * SRP6 secret equivalence test
+ *
+ * This verifies that the verifying client and server compute
+ * exactly the same credentials and premaster secrets as the
+ * plain BouncyCastle implementation they are derived from.
+ *
+ */
+public class SRP6SecretEquivalenceTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    byte[] aUser = "alice".getBytes();
+    byte[] aPass = "password123".getBytes();
+
+    @Test
+    public void testSha1() throws Exception {
+        Digest digest = new SHA1Digest();
+        test(digest, SRP6Parameters.CONSTANTS_1024);
+        test(digest, SRP6Parameters.CONSTANTS_2048);
+        test(digest, SRP6Parameters.CONSTANTS_4096);
+    }
+
+    @Test
+    public void testSha256() throws Exception {
+        Digest digest = new SHA256Digest();
+        test(digest, SRP6Parameters.CONSTANTS_1024);
+        test(digest, SRP6Parameters.CONSTANTS_2048);
+    }
+
+    private void test(Digest digest, SRP6Parameters params) throws Exception {
+        byte[] salt = Utils.newSalt(random, digest.getDigestSize());
+        BigInteger verifier = Utils.newVerifier(params, digest, salt, aUser, aPass);
+
+        final BigInteger clientPrivate = new BigInteger(params.N.bitLength() - 1, random);
+        final BigInteger serverPrivate = new BigInteger(params.N.bitLength() - 1, random);
+
+        SRP6Client refClient = new SRP6Client() {
+            @Override
+            protected BigInteger selectPrivateValue() {
+                return clientPrivate;
+            }
+        };
+        SRP6Server refServer = new SRP6Server() {
+            @Override
+            protected BigInteger selectPrivateValue() {
+                return serverPrivate;
+            }
+        };
+        SRP6VerifyingClient client = new SRP6VerifyingClient() {
+            @Override
+            protected BigInteger selectPrivateValue() {
+                return clientPrivate;
+            }
+        };
+        SRP6VerifyingServer server = new SRP6VerifyingServer() {
+            @Override
+            protected BigInteger selectPrivateValue() {
+                return serverPrivate;
+            }
+        };
+
+        refClient.init(params.N, params.g, digest, random);
+        refServer.init(params.N, params.g, verifier, digest, random);
+        client.init(params, digest, random);
+        server.initVerifiable(params, verifier, aUser, salt, digest, random);
+
+        BigInteger refA = refClient.generateClientCredentials(salt, aUser, aPass);
+        BigInteger refB = refServer.generateServerCredentials();
+        BigInteger A = client.generateClientCredentials(salt, aUser, aPass);
+        BigInteger B = server.generateServerCredentials();
+        Assert.assertEquals("Client credentials differ", refA, A);
+        Assert.assertEquals("Server credentials differ", refB, B);
+
+        BigInteger refServerS = refServer.calculateSecret(refA);
+        BigInteger refClientS = refClient.calculateSecret(refB);
+        Assert.assertEquals("Server secrets differ", refServerS, server.calculateSecret(A));
+        Assert.assertEquals("Client secrets differ", refClientS, client.calculateSecret(B));
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6EphemeralPool;
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6ServerBatch;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * SRP6 server batch test
+ *
+ * This verifies that batched server credentials complete
+ * handshakes in the order of the servers, also with a single
+ * server and with precomputed ephemerals, that a batch can be
+ * reused, and that servers of another group are refused.
+ *
+ */
+public class SRP6ServerBatchTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    byte[] pass = "password123".getBytes();
+    byte[] salt = "0123456789abcdef".getBytes();
+
+    ForkJoinPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(3);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        SRP6ServerBatch batch = new SRP6ServerBatch(SRP6Parameters.CONSTANTS_1024, new SHA256Digest(), pool);
+        checkBatch(batch, 7);
+        // reuses the scratch space of the first run
+        checkBatch(batch, 2);
+        checkBatch(batch, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoPool() {
+        new SRP6ServerBatch(SRP6Parameters.CONSTANTS_1024, new SHA256Digest(), null);
+    }
+
+    @Test
+    public void testEphemeralPool() throws Exception {
+        SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+        SRP6EphemeralPool ephemerals = new SRP6EphemeralPool(params, random, 4);
+        ephemerals.fill(2);
+        int count = 4;
+        SRP6VerifyingServer[] servers = new SRP6VerifyingServer[count];
+        SRP6VerifyingClient[] clients = new SRP6VerifyingClient[count];
+        for(int i = 0; i < count; i++) {
+            clients[i] = newClient(params);
+            servers[i] = Utils.newServer(params, new SHA256Digest(), salt, user(i), pass, random);
+            servers[i].setEphemeralPool(ephemerals);
+        }
+        BigInteger[] B = new SRP6ServerBatch(params, new SHA256Digest(), pool).generateServerCredentials(servers);
+        Assert.assertEquals(2, ephemerals.getHits());
+        for(int i = 0; i < count; i++) {
+            handshake(clients[i], servers[i], i, B[i]);
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        BigInteger[] B = new SRP6ServerBatch(SRP6Parameters.CONSTANTS_1024, new SHA256Digest(), pool).generateServerCredentials();
+        Assert.assertEquals(0, B.length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testForeignGroup() {
+        SRP6VerifyingServer server = Utils.newServer(SRP6Parameters.CONSTANTS_2048, new SHA256Digest(), salt, user(0), pass, random);
+        new SRP6ServerBatch(SRP6Parameters.CONSTANTS_1024, new SHA256Digest(), pool).generateServerCredentials(server);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testForeignDigest() {
+        SRP6VerifyingServer server = Utils.newServer(SRP6Parameters.CONSTANTS_1024, new SHA256Digest(), salt, user(0), pass, random);
+        new SRP6ServerBatch(SRP6Parameters.CONSTANTS_1024, new SHA1Digest(), pool).generateServerCredentials(server);
+    }
+
+    private void checkBatch(SRP6ServerBatch batch, int count) throws Exception {
+        SRP6Parameters params = batch.getGroup().getParameters();
+        SRP6VerifyingServer[] servers = new SRP6VerifyingServer[count];
+        SRP6VerifyingClient[] clients = new SRP6VerifyingClient[count];
+        for(int i = 0; i < count; i++) {
+            clients[i] = newClient(params);
+            servers[i] = Utils.newServer(params, new SHA256Digest(), salt, user(i), pass, random);
+        }
+        BigInteger[] B = batch.generateServerCredentials(servers);
+        Assert.assertEquals(count, B.length);
+        for(int i = 0; i < count; i++) {
+            handshake(clients[i], servers[i], i, B[i]);
+        }
+    }
+
+    private void handshake(SRP6VerifyingClient client, SRP6VerifyingServer server, int i, BigInteger B) throws Exception {
+        BigInteger A = client.generateClientCredentials(salt, user(i), pass);
+        Assert.assertEquals("clientSecret != serverSecret", server.calculateSecret(A), client.calculateSecret(B));
+        client.verifyServer(server.verifyClient(client.calculateVerifier()));
+    }
+
+    private SRP6VerifyingClient newClient(SRP6Parameters params) {
+        SRP6VerifyingClient client = new SRP6VerifyingClient();
+        client.init(params, new SHA256Digest(), random);
+        return client;
+    }
+
+    private byte[] user(int i) {
+        return ("user" + i).getBytes();
+    }
+
+}
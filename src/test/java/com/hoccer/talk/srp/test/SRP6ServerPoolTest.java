@@ -0,0 +1,161 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6ServerPool;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * SRP6 server pool test
+ *
+ * This verifies that pooled servers are recycled, that their
+ * secret state is wiped on release and that recycled servers
+ * complete handshakes correctly, also from several threads.
+ *
+ */
+public class SRP6ServerPoolTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    Digest digest = new SHA256Digest();
+    SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+
+    byte[] user = "alice".getBytes();
+    byte[] pass = "password123".getBytes();
+
+    @Test
+    public void testRecycling() throws Exception {
+        SRP6ServerPool pool = new SRP6ServerPool(params, digest, random, 2);
+        byte[] salt = Utils.newSalt(random, digest.getDigestSize());
+        BigInteger verifier = Utils.newVerifier(params, new SHA256Digest(), salt, user, pass);
+
+        SRP6VerifyingServer first = pool.acquire(verifier, user, salt);
+        handshake(first, salt);
+        pool.release(first);
+        Assert.assertEquals("Server not pooled", 1, pool.getIdleCount());
+
+        SRP6VerifyingServer second = pool.acquire(verifier, user, salt);
+        Assert.assertSame("Server not recycled", first, second);
+        handshake(second, salt);
+        pool.release(second);
+    }
+
+    @Test
+    public void testCapacity() {
+        SRP6ServerPool pool = new SRP6ServerPool(params, digest, random, 2);
+        byte[] salt = Utils.newSalt(random, digest.getDigestSize());
+        BigInteger verifier = Utils.newVerifier(params, new SHA256Digest(), salt, user, pass);
+        List<SRP6VerifyingServer> servers = new ArrayList<SRP6VerifyingServer>();
+        for(int i = 0; i < 4; i++) {
+            servers.add(pool.acquire(verifier, user, salt));
+        }
+        for(SRP6VerifyingServer server: servers) {
+            pool.release(server);
+        }
+        Assert.assertEquals("Pool exceeds capacity", 2, pool.getIdleCount());
+    }
+
+    @Test
+    public void testWipe() throws Exception {
+        SRP6ServerPool pool = new SRP6ServerPool(params, digest, random, 1) {
+            @Override
+            protected SRP6VerifyingServer newServer() {
+                return new InspectableServer();
+            }
+        };
+        byte[] salt = Utils.newSalt(random, digest.getDigestSize());
+        InspectableServer server = (InspectableServer)pool.acquire(Utils.newVerifier(params, new SHA256Digest(), salt, user, pass), user, salt);
+        handshake(server, salt);
+        Assert.assertNull("K kept after verification", server.getK());
+        byte[] M1 = server.getM1();
+        pool.release(server);
+        Assert.assertArrayEquals("M1 not wiped", new byte[M1.length], M1);
+        Assert.assertNull("Private value not dropped", server.getPrivateValue());
+    }
+
+    @Test
+    public void testVerifiersOutliveRelease() throws Exception {
+        SRP6ServerPool pool = new SRP6ServerPool(params, digest, random, 1);
+        byte[] salt = Utils.newSalt(random, digest.getDigestSize());
+        SRP6VerifyingServer server = pool.acquire(Utils.newVerifier(params, new SHA256Digest(), salt, user, pass), user, salt);
+
+        SRP6VerifyingClient client = new SRP6VerifyingClient();
+        client.init(params, new SHA256Digest(), random);
+        BigInteger A = client.generateClientCredentials(salt, user, pass);
+        client.calculateSecret(server.generateServerCredentials());
+        server.calculateSecret(A);
+        byte[] M1 = client.calculateVerifier();
+        byte[] M2 = server.verifyClient(M1);
+        byte[] sentM1 = M1.clone();
+        byte[] sentM2 = M2.clone();
+
+        pool.release(server);
+        client.verifyServer(M2);
+        Assert.assertArrayEquals("Returned M2 wiped on release", sentM2, M2);
+        Assert.assertArrayEquals("Returned M1 wiped on verification", sentM1, M1);
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        final SRP6ServerPool pool = new SRP6ServerPool(params, digest, random, 2);
+        final byte[] salt = Utils.newSalt(random, digest.getDigestSize());
+        final BigInteger verifier = Utils.newVerifier(params, new SHA256Digest(), salt, user, pass);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[4];
+        for(int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for(int i = 0; i < 5; i++) {
+                            SRP6VerifyingServer server = pool.acquire(verifier, user, salt);
+                            handshake(server, salt);
+                            pool.release(server);
+                        }
+                    } catch (Throwable t) {
+                        failure.set(t);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for(Thread thread: threads) {
+            thread.join();
+        }
+        Assert.assertNull("Concurrent handshake failed: " + failure.get(), failure.get());
+    }
+
+    private void handshake(SRP6VerifyingServer server, byte[] salt) throws Exception {
+        SRP6VerifyingClient client = new SRP6VerifyingClient();
+        client.init(params, new SHA256Digest(), random);
+        BigInteger A = client.generateClientCredentials(salt, user, pass);
+        BigInteger B = server.generateServerCredentials();
+        Assert.assertEquals("clientSecret != serverSecret", server.calculateSecret(A), client.calculateSecret(B));
+        client.verifyServer(server.verifyClient(client.calculateVerifier()));
+    }
+
+    /** Server exposing its secret state */
+    private static class InspectableServer extends SRP6VerifyingServer {
+        byte[] getK() {
+            return K;
+        }
+        byte[] getM1() {
+            return M1;
+        }
+        BigInteger getPrivateValue() {
+            return b;
+        }
+    }
+
+}
@@ -1,10 +1,12 @@
 package com.hoccer.talk.srp.test;
 
 import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6PublicValueCheck;
 import com.hoccer.talk.srp.SRP6VerifyingServer;
 import org.bouncycastle.crypto.CryptoException;
 import org.bouncycastle.crypto.Digest;
 import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.junit.Assert;
 import org.junit.Test;
 
 import java.math.BigInteger;
@@ -15,7 +17,8 @@ import java.security.SecureRandom;
  *
  * This verifies that the SRP server will reject
  * credentials that satisfy (A % N == 0), which
- * are considered unsafe.
+ * are considered unsafe, and that the strict policy
+ * also rejects degenerate and out of range values.
  *
  */
 public class SRP6ServerSafeguardsTest {
@@ -46,4 +49,36 @@ public class SRP6ServerSafeguardsTest {
         s.calculateSecret(params.N.multiply(new BigInteger("2")));
     }
 
+    @Test
+    public void testStrictPolicy() throws CryptoException {
+        SRP6PublicValueCheck check = new SRP6PublicValueCheck(SRP6PublicValueCheck.Policy.STRICT);
+        BigInteger[] invalid = {
+                BigInteger.ZERO, BigInteger.ONE, params.N.subtract(BigInteger.ONE),
+                params.N, params.N.add(BigInteger.ONE), BigInteger.ONE.negate()
+        };
+        for(BigInteger A: invalid) {
+            SRP6VerifyingServer s = new SRP6VerifyingServer();
+            s.init(params.N, params.g, verifier, digest, random);
+            s.setPublicValueCheck(check);
+            try {
+                s.calculateSecret(A);
+                Assert.fail("Accepted invalid credentials " + A);
+            } catch (CryptoException e) {
+                // expected
+            }
+        }
+        Assert.assertEquals("Rejections not counted", invalid.length, check.getRejected());
+    }
+
+    @Test
+    public void testReducedCredentials() throws CryptoException {
+        SRP6PublicValueCheck check = new SRP6PublicValueCheck(SRP6PublicValueCheck.Policy.RFC5054);
+        SRP6VerifyingServer s = new SRP6VerifyingServer();
+        s.init(params.N, params.g, verifier, digest, random);
+        s.setPublicValueCheck(check);
+        s.generateServerCredentials();
+        s.calculateSecret(params.N.add(params.g));
+        Assert.assertEquals(0, check.getRejected());
+    }
+
 }
@@ -0,0 +1,170 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6Snapshot;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * SRP6 group snapshot test
+ *
+ * This verifies that a loaded snapshot reproduces the generator
+ * table and group constants, resolves standard groups, that
+ * damaged, truncated or edited files are rejected and that a
+ * failed write leaves no files behind.
+ *
+ */
+public class SRP6SnapshotTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    // a group that is not one of the standard ones
+    SRP6Parameters params = new SRP6Parameters(SRP6Parameters.CONSTANTS_1024.N, BigInteger.valueOf(7));
+
+    byte[] user = "alice".getBytes();
+    byte[] pass = "password123".getBytes();
+    byte[] salt = "0123456789abcdef".getBytes();
+
+    Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("srp6", ".snapshot");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        SRP6Snapshot.write(params, file, new SHA256Digest(), new SHA1Digest());
+        SRP6Parameters loaded = SRP6Snapshot.load(file, new SHA256Digest(), new SHA1Digest());
+        Assert.assertNotSame(params, loaded);
+        Assert.assertEquals(params.N, loaded.N);
+        Assert.assertEquals(params.g, loaded.g);
+        for(int i = 0; i < 8; i++) {
+            BigInteger e = new BigInteger(params.N.bitLength() - 16 * i, random);
+            Assert.assertEquals("Incorrect loaded table", params.g.modPow(e, params.N), loaded.powerOfG(e));
+        }
+        Assert.assertEquals(params.getGroup(new SHA256Digest()).getK(), loaded.getGroup(new SHA256Digest()).getK());
+        Assert.assertArrayEquals(params.getH_Ng(new SHA1Digest()), loaded.getH_Ng(new SHA1Digest()));
+        handshake(loaded);
+    }
+
+    @Test
+    public void testStandardGroup() throws Exception {
+        SRP6Snapshot.write(SRP6Parameters.CONSTANTS_1024, file, new SHA256Digest());
+        Assert.assertSame(SRP6Parameters.CONSTANTS_1024, SRP6Snapshot.load(file));
+        handshake(SRP6Parameters.CONSTANTS_1024);
+    }
+
+    @Test
+    public void testDamaged() throws Exception {
+        SRP6Snapshot.write(params, file, new SHA256Digest());
+        byte[] data = Files.readAllBytes(file);
+        data[data.length / 2] ^= 1;
+        Files.write(file, data);
+        try {
+            SRP6Snapshot.load(file);
+            Assert.fail("Damaged snapshot accepted");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        SRP6Snapshot.write(params, file, new SHA256Digest());
+        byte[] data = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(data, data.length - 100));
+        try {
+            SRP6Snapshot.load(file);
+            Assert.fail("Truncated snapshot accepted");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testEditedConstants() throws Exception {
+        SRP6Snapshot.write(params, file, new SHA256Digest());
+        byte[] data = Files.readAllBytes(file);
+        // last byte of H(N) xor H(g), right before the checksum
+        data[data.length - 5] ^= 1;
+        Files.write(file, withChecksum(data));
+        try {
+            SRP6Snapshot.load(file, new SHA256Digest());
+            Assert.fail("Edited group constants accepted");
+        } catch (IOException e) {
+            // expected
+        }
+        // constants of digests not asked for are not used
+        SRP6Parameters loaded = SRP6Snapshot.load(file);
+        Assert.assertArrayEquals(params.getH_Ng(new SHA256Digest()), loaded.getH_Ng(new SHA256Digest()));
+    }
+
+    @Test
+    public void testEditedTable() throws Exception {
+        SRP6Snapshot.write(params, file, new SHA256Digest());
+        byte[] data = Files.readAllBytes(file);
+        data[data.length / 2] ^= 1;
+        Files.write(file, withChecksum(data));
+        try {
+            SRP6Snapshot.load(file);
+            Assert.fail("Edited generator table accepted");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFailedWrite() throws Exception {
+        Files.delete(file);
+        try {
+            SRP6Snapshot.write(params, file, new SHA256Digest(), null);
+            Assert.fail("Write with missing digest succeeded");
+        } catch (NullPointerException e) {
+            // expected
+        }
+        Assert.assertFalse("Snapshot created", Files.exists(file));
+        Assert.assertFalse("Temporary file left behind", Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+    }
+
+    /** Replace the trailing checksum, as an editor of the file would */
+    private byte[] withChecksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 4);
+        ByteBuffer.wrap(data).putInt(data.length - 4, (int)crc.getValue());
+        return data;
+    }
+
+    private void handshake(SRP6Parameters params) throws Exception {
+        SRP6VerifyingClient client = new SRP6VerifyingClient();
+        client.init(params, new SHA256Digest(), random);
+        SRP6VerifyingServer server = Utils.newServer(params, new SHA256Digest(), salt, user, pass, random);
+
+        BigInteger A = client.generateClientCredentials(salt, user, pass);
+        BigInteger B = server.generateServerCredentials();
+        Assert.assertEquals("clientSecret != serverSecret", server.calculateSecret(A), client.calculateSecret(B));
+        client.verifyServer(server.verifyClient(client.calculateVerifier()));
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6ServerState;
+import com.hoccer.talk.srp.SRP6StateSealer;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.CryptoException;
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+/**
+ * SRP6 sealed server state test
+ *
+ * This verifies that a handshake can be completed by a
+ * different server instance from sealed state, that clock
+ * skew between nodes is tolerated, and that tampered, foreign
+ * or expired state is rejected.
+ *
+ */
+public class SRP6StateSealerTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    Digest digest = new SHA256Digest();
+    SRP6Parameters params = SRP6Parameters.CONSTANTS_2048;
+
+    byte[] user = "alice".getBytes();
+    byte[] pass = "password123".getBytes();
+
+    @Test
+    public void testHandoff() throws Exception {
+        SRP6StateSealer sealer = new SRP6StateSealer(newKey(), random, 60000);
+        byte[] salt = Utils.newSalt(random, digest.getDigestSize());
+        BigInteger verifier = Utils.newVerifier(params, new SHA256Digest(), salt, user, pass);
+
+        SRP6VerifyingClient client = new SRP6VerifyingClient();
+        client.init(params, new SHA256Digest(), random);
+        BigInteger A = client.generateClientCredentials(salt, user, pass);
+
+        // first node sends B and the sealed state
+        SRP6VerifyingServer first = new SRP6VerifyingServer();
+        first.initVerifiable(params, verifier, user, salt, new SHA256Digest(), random);
+        BigInteger B = first.generateServerCredentials();
+        byte[] sealed = sealer.seal(first.exportState());
+
+        // second node completes the handshake
+        SRP6VerifyingServer second = new SRP6VerifyingServer();
+        second.initVerifiable(sealer.unseal(sealed), new SHA256Digest(), random);
+        Assert.assertEquals("clientSecret != serverSecret", second.calculateSecret(A), client.calculateSecret(B));
+        client.verifyServer(second.verifyClient(client.calculateVerifier()));
+    }
+
+    @Test
+    public void testEncoding() throws Exception {
+        SRP6ServerState state = new SRP6ServerState(SRP6Parameters.CONSTANTS_8192, "SHA-1", 1234L,
+                user, Utils.newSalt(random, digest.getDigestSize()), BigInteger.TEN, BigInteger.ONE, BigInteger.valueOf(2));
+        SRP6ServerState decoded = SRP6ServerState.decode(state.encode());
+        Assert.assertSame("Incorrect group", SRP6Parameters.CONSTANTS_8192, decoded.getParameters());
+        Assert.assertEquals("Incorrect digest", "SHA-1", decoded.getDigestAlgorithm());
+        Assert.assertEquals("Incorrect creation time", 1234L, decoded.getCreated());
+        Assert.assertArrayEquals("Incorrect identity", user, decoded.getIdentifier());
+        Assert.assertArrayEquals("Incorrect salt", state.getSalt(), decoded.getSalt());
+        Assert.assertEquals("Incorrect verifier", BigInteger.TEN, decoded.getVerifier());
+        Assert.assertEquals("Incorrect private value", BigInteger.ONE, decoded.getPrivateValue());
+        Assert.assertEquals("Incorrect public value", BigInteger.valueOf(2), decoded.getPublicValue());
+    }
+
+    @Test(expected = CryptoException.class)
+    public void testTampering() throws Exception {
+        SRP6StateSealer sealer = new SRP6StateSealer(newKey(), random, 60000);
+        byte[] sealed = sealer.seal(newState(System.currentTimeMillis()));
+        sealed[sealed.length / 2] ^= 1;
+        sealer.unseal(sealed);
+    }
+
+    @Test(expected = CryptoException.class)
+    public void testForeignKey() throws Exception {
+        byte[] sealed = new SRP6StateSealer(newKey(), random, 60000).seal(newState(System.currentTimeMillis()));
+        new SRP6StateSealer(newKey(), random, 60000).unseal(sealed);
+    }
+
+    @Test(expected = CryptoException.class)
+    public void testExpiry() throws Exception {
+        SRP6StateSealer sealer = new SRP6StateSealer(newKey(), random, 60000);
+        sealer.unseal(sealer.seal(newState(System.currentTimeMillis() - 120000)));
+    }
+
+    @Test
+    public void testClockSkew() throws Exception {
+        SRP6StateSealer sealer = new SRP6StateSealer(newKey(), random, 60000, 5000);
+        // sealed by a node whose clock runs two seconds ahead
+        sealer.unseal(sealer.seal(newState(System.currentTimeMillis() + 2000)));
+        try {
+            sealer.unseal(sealer.seal(newState(System.currentTimeMillis() + 60000)));
+            Assert.fail("State from the future accepted");
+        } catch (CryptoException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDigestMismatch() throws Exception {
+        new SRP6VerifyingServer().initVerifiable(newState(System.currentTimeMillis()), new SHA1Digest(), random);
+    }
+
+    private SRP6ServerState newState(long created) {
+        return new SRP6ServerState(params, digest.getAlgorithmName(), created,
+                user, Utils.newSalt(random, digest.getDigestSize()), BigInteger.TEN, BigInteger.ONE, BigInteger.valueOf(2));
+    }
+
+    private byte[] newKey() {
+        byte[] key = new byte[16];
+        random.nextBytes(key);
+        return key;
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6DigestEncoder;
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6Verification;
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.agreement.srp.SRP6Util;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * SRP6 verification test
+ *
+ * This verifies that the buffer-based M1 and M2 calculations
+ * produce the same results as the allocating variants.
+ *
+ */
+public class SRP6VerificationTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    @Test
+    public void testSha1() {
+        test(new SHA1Digest(), SRP6Parameters.CONSTANTS_1024);
+        test(new SHA1Digest(), SRP6Parameters.CONSTANTS_4096);
+    }
+
+    @Test
+    public void testSha256() {
+        test(new SHA256Digest(), SRP6Parameters.CONSTANTS_2048);
+        test(new SHA256Digest(), SRP6Parameters.CONSTANTS_8192);
+    }
+
+    @Test
+    public void testSmallNumbers() {
+        Digest digest = new SHA1Digest();
+        SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+        check(digest, params, BigInteger.ZERO, BigInteger.ONE);
+        check(digest, params, BigInteger.valueOf(255), BigInteger.valueOf(256));
+    }
+
+    @Test
+    public void testCachedH_Ng() {
+        Digest digest = new SHA1Digest();
+        SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+        Assert.assertArrayEquals("Incorrect cached H_Ng",
+                SRP6Verification.calculateH_Ng(digest, params.N, params.g), params.getH_Ng(digest));
+        Assert.assertSame("H_Ng not cached", params.getH_Ng(digest), params.getH_Ng(digest));
+    }
+
+    @Test
+    public void testVerifierEquals() {
+        byte[] buffer = new byte[24];
+        random.nextBytes(buffer);
+        byte[] expected = Arrays.copyOfRange(buffer, 4, 24);
+        Assert.assertTrue(SRP6Verification.verifierEquals(buffer, 4, 20, expected.clone()));
+        for(int i = 0; i < expected.length; i++) {
+            byte[] changed = expected.clone();
+            changed[i] ^= 0x10;
+            Assert.assertFalse("Mismatch at " + i + " accepted", SRP6Verification.verifierEquals(buffer, 4, 20, changed));
+        }
+        Assert.assertFalse(SRP6Verification.verifierEquals(buffer, 4, 20, Arrays.copyOf(expected, 19)));
+        Assert.assertFalse(SRP6Verification.verifierEquals(buffer, 4, 20, Arrays.copyOf(expected, 21)));
+        Assert.assertFalse(SRP6Verification.verifierEquals(buffer, 4, 20, null));
+    }
+
+    private void test(Digest digest, SRP6Parameters params) {
+        for(int i = 0; i < 8; i++) {
+            BigInteger A = new BigInteger(params.N.bitLength(), random).mod(params.N);
+            BigInteger B = new BigInteger(params.N.bitLength() - 8 * i, random);
+            check(digest, params, A, B);
+        }
+    }
+
+    private void check(Digest digest, SRP6Parameters params, BigInteger A, BigInteger B) {
+        byte[] I = new byte[12];
+        byte[] s = new byte[digest.getDigestSize()];
+        byte[] K = new byte[digest.getDigestSize()];
+        random.nextBytes(I);
+        random.nextBytes(s);
+        random.nextBytes(K);
+
+        byte[] refM1 = SRP6Verification.calculateM1(digest, params.N, params.g, I, s, A, B, K);
+        byte[] refM2 = SRP6Verification.calculateM2(digest, A, refM1, K);
+
+        int size = digest.getDigestSize();
+        SRP6DigestEncoder encoder = new SRP6DigestEncoder();
+        byte[] out = new byte[3 + 3 * size];
+        SRP6Verification.calculateM1(digest, params.getH_Ng(digest), I, s, A, B, K, encoder, out, 3);
+        SRP6Verification.calculateM2(digest, A, out, 3, K, encoder, out, 3 + size);
+        SRP6Verification.calculateKey(digest, B, encoder, out, 3 + 2 * size);
+
+        Assert.assertArrayEquals("Incorrect M1", refM1, Arrays.copyOfRange(out, 3, 3 + size));
+        Assert.assertArrayEquals("Incorrect M2", refM2, Arrays.copyOfRange(out, 3 + size, 3 + 2 * size));
+        Assert.assertArrayEquals("Incorrect key", SRP6Verification.calculateHash(digest, B),
+                Arrays.copyOfRange(out, 3 + 2 * size, 3 + 3 * size));
+
+        int length = (params.N.bitLength() + 7) / 8;
+        Assert.assertEquals("Incorrect u", SRP6Util.calculateU(digest, params.N, A, B),
+                SRP6Verification.calculateU(digest, length, A, B, encoder));
+    }
+
+}
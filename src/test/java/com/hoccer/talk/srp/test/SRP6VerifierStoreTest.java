@@ -0,0 +1,204 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6CachingVerifierStore;
+import com.hoccer.talk.srp.SRP6MemoryVerifierStore;
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6VerifierRecord;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * SRP6 verifier store test
+ *
+ * This verifies caching, negative caching, invalidation, also
+ * during a load, expiry and eviction of the caching verifier
+ * store, lookups of identities with colliding array hashes and
+ * logins with records from a store.
+ *
+ */
+public class SRP6VerifierStoreTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+
+    byte[] user = "alice".getBytes();
+    byte[] pass = "password123".getBytes();
+    byte[] salt = "0123456789abcdef".getBytes();
+
+    @Test
+    public void testCaching() {
+        CountingStore backend = new CountingStore();
+        backend.put(newRecord(user, pass));
+        SRP6CachingVerifierStore cache = new SRP6CachingVerifierStore(backend, 16, 1, 1, TimeUnit.HOURS);
+
+        SRP6VerifierRecord first = cache.lookup(user);
+        Assert.assertNotNull(first);
+        Assert.assertSame(first, cache.lookup("alice".getBytes()));
+        Assert.assertNull(cache.lookup("mallory".getBytes()));
+        Assert.assertNull(cache.lookup("mallory".getBytes()));
+        Assert.assertEquals("Backend not shielded", 2, backend.lookups.get());
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+
+        // password change
+        SRP6VerifierRecord changed = newRecord(user, "secret".getBytes());
+        backend.put(changed);
+        Assert.assertSame("Stale record expected before invalidation", first, cache.lookup(user));
+        cache.invalidate(user);
+        Assert.assertSame("Record not reloaded", changed, cache.lookup(user));
+    }
+
+    @Test
+    public void testInvalidationDuringLoad() throws Exception {
+        final BlockingStore backend = new BlockingStore();
+        backend.put(newRecord(user, pass));
+        final SRP6CachingVerifierStore cache = new SRP6CachingVerifierStore(backend, 16, 1, 1, TimeUnit.HOURS);
+
+        final AtomicReference<SRP6VerifierRecord> loaded = new AtomicReference<SRP6VerifierRecord>();
+        Thread lookup = new Thread() {
+            @Override
+            public void run() {
+                loaded.set(cache.lookup(user));
+            }
+        };
+        lookup.start();
+        Assert.assertTrue("Load did not start", backend.entered.await(10, TimeUnit.SECONDS));
+
+        // password change while the old record is being loaded
+        SRP6VerifierRecord changed = newRecord(user, "secret".getBytes());
+        backend.put(changed);
+        cache.invalidate(user);
+        backend.release.countDown();
+        lookup.join();
+
+        Assert.assertNotNull(loaded.get());
+        Assert.assertNotSame(changed, loaded.get());
+        Assert.assertSame("Stale record cached after invalidation", changed, cache.lookup(user));
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        CountingStore backend = new CountingStore();
+        backend.put(newRecord(user, pass));
+        SRP6CachingVerifierStore cache = new SRP6CachingVerifierStore(backend, 16, 20, 0, TimeUnit.MILLISECONDS);
+        cache.lookup(user);
+        cache.lookup("mallory".getBytes());
+        cache.lookup("mallory".getBytes());
+        Assert.assertEquals("Negative entries cached without TTL", 3, backend.lookups.get());
+        Thread.sleep(40);
+        cache.lookup(user);
+        Assert.assertEquals("Entry did not expire", 4, backend.lookups.get());
+    }
+
+    @Test
+    public void testEviction() {
+        CountingStore backend = new CountingStore();
+        SRP6CachingVerifierStore cache = new SRP6CachingVerifierStore(backend, 20, 1, 1, TimeUnit.HOURS);
+        for(int i = 0; i < 100; i++) {
+            cache.lookup(("user" + i).getBytes());
+        }
+        Assert.assertTrue("Cache exceeds bound: " + cache.size(), cache.size() <= 20);
+        Assert.assertTrue(cache.getEvictions() > 0);
+        cache.invalidateAll();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testCollidingIdentities() {
+        // {0, 31} and {1, 0} have the same Arrays.hashCode, and so do all their concatenations
+        byte[][] blocks = new byte[][] { { 0, 31 }, { 1, 0 } };
+        SRP6MemoryVerifierStore store = new SRP6MemoryVerifierStore();
+        SRP6CachingVerifierStore cache = new SRP6CachingVerifierStore(store, 1024, 1, 1, TimeUnit.HOURS);
+        byte[][] identities = new byte[256][];
+        for(int i = 0; i < identities.length; i++) {
+            identities[i] = new byte[16];
+            for(int bit = 0; bit < 8; bit++) {
+                System.arraycopy(blocks[(i >>> bit) & 1], 0, identities[i], 2 * bit, 2);
+            }
+            Assert.assertEquals(Arrays.hashCode(identities[0]), Arrays.hashCode(identities[i]));
+            if(i % 2 == 0) {
+                store.put(new SRP6VerifierRecord(params, identities[i], salt, BigInteger.valueOf(i + 2)));
+            }
+        }
+        for(int i = 0; i < identities.length; i++) {
+            SRP6VerifierRecord record = cache.lookup(identities[i]);
+            if(i % 2 == 0) {
+                Assert.assertEquals(BigInteger.valueOf(i + 2), record.getVerifier());
+            } else {
+                Assert.assertNull("Record of another identity returned", record);
+            }
+        }
+    }
+
+    @Test
+    public void testLogin() throws Exception {
+        SRP6MemoryVerifierStore store = new SRP6MemoryVerifierStore();
+        store.put(newRecord(user, pass));
+        SRP6CachingVerifierStore cache = new SRP6CachingVerifierStore(store, 16, 1, 1, TimeUnit.MINUTES);
+
+        SRP6VerifyingClient client = new SRP6VerifyingClient();
+        client.init(params, new SHA1Digest(), random);
+        SRP6VerifyingServer server = new SRP6VerifyingServer();
+        server.initVerifiable(cache.lookup(user), new SHA1Digest(), random);
+
+        BigInteger A = client.generateClientCredentials(salt, user, pass);
+        BigInteger B = server.generateServerCredentials();
+        client.calculateSecret(B);
+        server.calculateSecret(A);
+        client.verifyServer(server.verifyClient(client.calculateVerifier()));
+    }
+
+    private SRP6VerifierRecord newRecord(byte[] identity, byte[] password) {
+        return new SRP6VerifierRecord(params, identity, salt,
+                Utils.newVerifier(params, new SHA1Digest(), salt, identity, password));
+    }
+
+    /** Store whose first lookup reads the record and then waits */
+    static class BlockingStore extends SRP6MemoryVerifierStore {
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public SRP6VerifierRecord lookup(byte[] identity) {
+            SRP6VerifierRecord record = super.lookup(identity);
+            if(entered.getCount() > 0) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return record;
+        }
+
+    }
+
+    /** Store that counts lookups */
+    static class CountingStore extends SRP6MemoryVerifierStore {
+
+        final AtomicInteger lookups = new AtomicInteger();
+
+        @Override
+        public SRP6VerifierRecord lookup(byte[] identity) {
+            lookups.incrementAndGet();
+            return super.lookup(identity);
+        }
+
+    }
+
+}
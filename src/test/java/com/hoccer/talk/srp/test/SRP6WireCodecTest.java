@@ -0,0 +1,189 @@
+package com.hoccer.talk.srp.test;
+
+import com.hoccer.talk.srp.SRP6Group;
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6VerifyingClient;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import com.hoccer.talk.srp.SRP6WireCodec;
+import org.bouncycastle.crypto.CryptoException;
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.SecureRandom;
+
+/**
+ * SRP6 wire codec test
+ *
+ * This verifies the field encoding of numbers and byte arrays,
+ * that it does not depend on the byte order of the buffer, the
+ * rejection of truncated and oversized fields, that a full buffer
+ * is left unchanged, and a full handshake passing all values
+ * through direct buffers.
+ *
+ */
+public class SRP6WireCodecTest {
+
+    // shared RNG
+    SecureRandom random = new SecureRandom();
+
+    Digest digest = new SHA256Digest();
+    SRP6Parameters params = SRP6Parameters.CONSTANTS_1024;
+    SRP6Group group = params.getGroup(digest);
+
+    byte[] user = "alice".getBytes();
+    byte[] pass = "password123".getBytes();
+    byte[] salt = "0123456789abcdef".getBytes();
+
+    @Test
+    public void testNumbers() throws Exception {
+        BigInteger[] values = new BigInteger[] {
+                BigInteger.ONE, BigInteger.valueOf(255), new BigInteger(1000, random), params.N.subtract(BigInteger.ONE)
+        };
+        for(BigInteger value: values) {
+            ByteBuffer buffer = ByteBuffer.allocate(SRP6WireCodec.numberSize(group));
+            SRP6WireCodec.putNumber(buffer, value, group);
+            Assert.assertFalse("Number not padded", buffer.hasRemaining());
+            buffer.flip();
+            Assert.assertEquals(value, SRP6WireCodec.getNumber(buffer, group));
+            Assert.assertFalse(buffer.hasRemaining());
+        }
+        try {
+            SRP6WireCodec.putNumber(ByteBuffer.allocate(200), params.N.shiftLeft(8), group);
+            Assert.fail("Oversized number written");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBytes() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+        SRP6WireCodec.putBytes(buffer, salt);
+        SRP6WireCodec.putBytes(buffer, new byte[0]);
+        buffer.flip();
+
+        ByteBuffer field = SRP6WireCodec.getBytes(buffer);
+        Assert.assertTrue("Field copied out of the buffer", field.isDirect());
+        Assert.assertEquals(salt.length, field.remaining());
+        Assert.assertEquals(2 + salt.length, buffer.position());
+        byte[] read = new byte[field.remaining()];
+        field.get(read);
+        Assert.assertArrayEquals(salt, read);
+        Assert.assertEquals(0, SRP6WireCodec.getByteArray(buffer).length);
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testByteOrder() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+        SRP6WireCodec.putBytes(buffer, salt);
+        Assert.assertEquals("Length not big-endian", 0, buffer.get(0));
+        Assert.assertEquals(salt.length, buffer.get(1));
+        buffer.flip();
+        Assert.assertArrayEquals(salt, SRP6WireCodec.getByteArray(buffer));
+
+        ByteBuffer big = ByteBuffer.wrap(new byte[] { 0, 3, 1, 2, 3 }).order(ByteOrder.LITTLE_ENDIAN);
+        Assert.assertEquals(3, SRP6WireCodec.getBytes(big).remaining());
+    }
+
+    @Test
+    public void testOverflow() {
+        ByteBuffer buffer = ByteBuffer.allocate(SRP6WireCodec.numberSize(group) - 1);
+        try {
+            SRP6WireCodec.putNumber(buffer, BigInteger.ONE, group);
+            Assert.fail("Number written past the limit");
+        } catch (BufferOverflowException e) {
+            Assert.assertEquals("Partial number written", 0, buffer.position());
+        }
+        try {
+            SRP6WireCodec.putBytes(buffer, new byte[buffer.capacity()]);
+            Assert.fail("Field written past the limit");
+        } catch (BufferOverflowException e) {
+            Assert.assertEquals("Partial field written", 0, buffer.position());
+        }
+    }
+
+    @Test
+    public void testMalformed() {
+        ByteBuffer[] inputs = new ByteBuffer[] {
+                ByteBuffer.wrap(new byte[] { 0 }),
+                ByteBuffer.wrap(new byte[] { 0, 4, 1, 2, 3 }),
+        };
+        for(ByteBuffer input: inputs) {
+            try {
+                SRP6WireCodec.getBytes(input);
+                Assert.fail("Truncated field accepted");
+            } catch (CryptoException e) {
+                Assert.assertEquals("Truncated field consumed", 0, input.position());
+            }
+        }
+
+        ByteBuffer tooLong = ByteBuffer.allocate(SRP6WireCodec.bytesSize(group.getLength() + 1));
+        SRP6WireCodec.putBytes(tooLong, new byte[group.getLength() + 1]);
+        tooLong.flip();
+        try {
+            SRP6WireCodec.getNumber(tooLong, group);
+            Assert.fail("Oversized number accepted");
+        } catch (CryptoException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testHandshake() throws Exception {
+        Assert.assertTrue("Handshake failed", handshake(false));
+    }
+
+    @Test
+    public void testWrongVerifier() throws Exception {
+        Assert.assertFalse("Wrong verifier accepted", handshake(true));
+    }
+
+    private boolean handshake(boolean corrupt) throws Exception {
+        SRP6VerifyingClient client = new SRP6VerifyingClient();
+        client.init(params, new SHA256Digest(), random);
+        SRP6VerifyingServer server = Utils.newServer(params, new SHA256Digest(), salt, user, pass, random);
+
+        // challenge: salt and B
+        ByteBuffer wire = ByteBuffer.allocateDirect(1024);
+        SRP6WireCodec.putBytes(wire, salt);
+        SRP6WireCodec.putNumber(wire, server.generateServerCredentials(), group);
+        wire.flip();
+        byte[] receivedSalt = SRP6WireCodec.getByteArray(wire);
+        ByteBuffer B = SRP6WireCodec.getBytes(wire);
+
+        // proof: A and M1
+        BigInteger A = client.generateClientCredentials(receivedSalt, user, pass);
+        client.calculateSecret(B);
+        wire.clear();
+        SRP6WireCodec.putNumber(wire, A, group);
+        SRP6WireCodec.putBytes(wire, client.calculateVerifier());
+        wire.flip();
+        server.calculateSecret(SRP6WireCodec.getBytes(wire));
+        ByteBuffer M1 = SRP6WireCodec.getBytes(wire);
+        if(corrupt) {
+            M1.put(0, (byte)(M1.get(0) ^ 1));
+        }
+
+        // confirmation: M2
+        byte[] M2;
+        try {
+            M2 = server.verifyClient(M1);
+        } catch (CryptoException e) {
+            return false;
+        }
+        Assert.assertEquals("Verifier consumed", 0, M1.position());
+        wire.clear();
+        SRP6WireCodec.putBytes(wire, M2);
+        wire.flip();
+        client.verifyServer(SRP6WireCodec.getBytes(wire));
+        return true;
+    }
+
+}
@@ -1,6 +1,44 @@
 package com.hoccer.talk.srp.test;
 
+import com.hoccer.talk.srp.SRP6Parameters;
+import com.hoccer.talk.srp.SRP6VerifyingServer;
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.agreement.srp.SRP6VerifierGenerator;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
 public class Utils {
+
+    /** Random salt of the given length */
+    public static byte[] newSalt(SecureRandom random, int length) {
+        byte[] salt = new byte[length];
+        random.nextBytes(salt);
+        return salt;
+    }
+
+    /** Verifier for the given account, computed with the BouncyCastle generator */
+    public static BigInteger newVerifier(SRP6Parameters params, Digest digest,
+                                         byte[] salt, byte[] identity, byte[] password) {
+        SRP6VerifierGenerator verifierGenerator = new SRP6VerifierGenerator();
+        verifierGenerator.init(params.N, params.g, digest);
+        return verifierGenerator.generateVerifier(salt, identity, password);
+    }
+
+    /** Server initialized for the given account, the digest is kept by the server */
+    public static SRP6VerifyingServer newServer(SRP6Parameters params, Digest digest,
+                                                byte[] salt, byte[] identity, byte[] password, SecureRandom random) {
+        return initServer(new SRP6VerifyingServer(), params, digest, salt, identity, password, random);
+    }
+
+    /** Initialize the given server for the given account, the digest is kept by the server */
+    public static <T extends SRP6VerifyingServer> T initServer(T server, SRP6Parameters params, Digest digest,
+                                                             byte[] salt, byte[] identity, byte[] password, SecureRandom random) {
+        BigInteger verifier = newVerifier(params, digest, salt, identity, password);
+        server.initVerifiable(params, verifier, identity, salt, digest, random);
+        return server;
+    }
+
     public static byte[] fromHexString(final String encoded) {
         if ((encoded.length() % 2) != 0) {
             throw new IllegalArgumentException("Input string must contain an even number of characters");